@@ -0,0 +1,39 @@
+package Benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 基准测试的入口，参数与JMH的命令行相同。<br/>
+ * 没有指定时默认使用{@code -prof gc}统计分配速率，并把结果以JSON格式写入{@code jmh-result.json}，便于在不同版本之间比较。
+ * 例如 {@code java -jar target/benchmarks.jar SegmentBenchmark -p dict_size=10000}
+ */
+public class BenchmarkMain {
+    // 默认的结果文件
+    private static final String DEFAULT_RESULT = "jmh-result.json";
+
+    public static void main(String[] args) throws RunnerException {
+        CommandLineOptions command_line;
+        try {
+            command_line = new CommandLineOptions(args);
+        } catch (CommandLineOptionException e) {
+            System.err.println("参数错误：" + e.getMessage());
+            return;
+        }
+
+        var builder = new OptionsBuilder().parent(command_line);
+        if (!command_line.getResultFormat().hasValue())
+            builder.resultFormat(ResultFormatType.JSON);
+        if (!command_line.getResult().hasValue())
+            builder.result(DEFAULT_RESULT);
+        if (command_line.getProfilers().isEmpty())
+            builder.addProfiler(GCProfiler.class);
+
+        new Runner(builder.build()).run();
+    }
+}
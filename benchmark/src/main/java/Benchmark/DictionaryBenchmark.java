@@ -0,0 +1,97 @@
+package Benchmark;
+
+import Dictionary.Word;
+import Utils.ACTrie;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 词库构建和加载的基准测试：从文本词库构建、从二进制快照加载、以及buildup本身的耗时。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DictionaryBenchmark {
+
+    /**
+     * buildup的测试需要每次调用之前准备一个尚未构建的AC自动机
+     */
+    @State(Scope.Thread)
+    public static class Unbuilt {
+        ACTrie trie;
+
+        @Setup(Level.Invocation)
+        public void setup(DictionaryBenchmark benchmark) {
+            trie = new ACTrie().add_words(benchmark.words);
+        }
+    }
+
+    @Param({"1000", "10000", "100000"})
+    public int dict_size;
+
+    // 词库中的词语
+    List<Word> words;
+    // 文本词库文件
+    private Path dict_path;
+    // 二进制快照文件
+    private Path snapshot_path;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        var corpus = new Synthetic_corpus(dict_size, 42);
+        words = corpus.dictionary();
+        dict_path = Files.createTempFile("bench_dict", ".txt");
+        corpus.write_dictionary(dict_path);
+        snapshot_path = Files.createTempFile("bench_dict", ".bin");
+        new ACTrie(words).save(snapshot_path.toString());
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() throws IOException {
+        Files.deleteIfExists(dict_path);
+        Files.deleteIfExists(snapshot_path);
+    }
+
+    /**
+     * 读取文本词库并构建AC自动机
+     */
+    @Benchmark
+    public ACTrie load_text() {
+        return new ACTrie(dict_path.toString());
+    }
+
+    /**
+     * 通过内存映射加载二进制快照
+     */
+    @Benchmark
+    public ACTrie load_snapshot() {
+        return ACTrie.load(snapshot_path.toString());
+    }
+
+    /**
+     * 添加词语并完成构建
+     */
+    @Benchmark
+    public ACTrie build() {
+        var trie = new ACTrie().add_words(words);
+        trie.buildup();
+        return trie;
+    }
+
+    /**
+     * 只测试buildup，即建立fail边并编译为双数组
+     */
+    @Benchmark
+    public ACTrie buildup(Unbuilt state) {
+        state.trie.buildup();
+        return state.trie;
+    }
+}
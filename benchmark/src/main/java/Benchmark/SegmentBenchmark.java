@@ -0,0 +1,100 @@
+package Benchmark;
+
+import Dictionary.Seg_unit;
+import Dictionary.Segment;
+import Utils.ACTrie;
+import Utils.BackwardSegmenter;
+import Utils.BidirectionalSegmenter;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 模式匹配和各种分词方式的基准测试。每次调用处理一个句段，句段从预先生成的一组句段中轮流选取，
+ * 返回{@code Segment}的方法和写入缓冲区的方法分别测试，以便比较两者的分配速率。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SegmentBenchmark {
+    // 预先生成的句段数量
+    private static final int SENTENCE_COUNT = 256;
+
+    @Param({"1000", "10000", "100000"})
+    public int dict_size;
+
+    @Param({"16", "128", "1024"})
+    public int sentence_length;
+
+    private ACTrie trie;
+    private BackwardSegmenter backward;
+    private BidirectionalSegmenter bidirectional;
+    private String[] sentences;
+    private int next = 0;
+
+    private final ACTrie.Match_buffer matches = new ACTrie.Match_buffer();
+    private final ACTrie.Token_buffer tokens = new ACTrie.Token_buffer();
+
+    @Setup(Level.Trial)
+    public void setup() {
+        var corpus = new Synthetic_corpus(dict_size, 42);
+        trie = new ACTrie(corpus.dictionary());
+        backward = new BackwardSegmenter(trie);
+        bidirectional = new BidirectionalSegmenter(trie);
+        sentences = corpus.sentences(SENTENCE_COUNT, sentence_length);
+    }
+
+    /**
+     * 轮流选取下一个句段
+     * @return 句段
+     */
+    private String next_sentence() {
+        var res = sentences[next];
+        next = (next + 1) % SENTENCE_COUNT;
+        return res;
+    }
+
+    @Benchmark
+    public List<Seg_unit> match_patterns_for() {
+        return trie.match_patterns_for(next_sentence());
+    }
+
+    @Benchmark
+    public ACTrie.Match_buffer match_patterns_for_buffer() {
+        return trie.match_patterns_for(next_sentence(), matches);
+    }
+
+    @Benchmark
+    public Segment forward_segment_sentence() {
+        return trie.forward_segment_sentence(next_sentence());
+    }
+
+    @Benchmark
+    public ACTrie.Token_buffer forward_segment_sentence_buffer() {
+        return trie.forward_segment_sentence(next_sentence(), tokens);
+    }
+
+    @Benchmark
+    public ACTrie.Token_buffer backward_segment_sentence_buffer() {
+        return backward.segment(next_sentence(), tokens);
+    }
+
+    @Benchmark
+    public Segment bidirectional_segment_sentence() {
+        return bidirectional.segment(next_sentence());
+    }
+
+    @Benchmark
+    public Segment shortest_segment_sentence() {
+        return trie.shortest_segment_sentence(next_sentence());
+    }
+
+    @Benchmark
+    public ACTrie.Token_buffer max_probability_segment_sentence_buffer() {
+        return trie.max_probability_segment_sentence(next_sentence(), tokens);
+    }
+}
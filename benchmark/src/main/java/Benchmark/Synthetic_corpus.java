@@ -0,0 +1,190 @@
+package Benchmark;
+
+import Dictionary.TagSet;
+import Dictionary.Word;
+import Dictionary.Word_info;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * 基准测试使用的合成语料，由固定的随机种子生成，不依赖外部数据，相同的参数每次生成相同的内容。<br/>
+ * 词语由常用汉字区间中的字符随机组成，每个词语有一到两个词性；句段由词库中的词语和少量词库外的单字拼接而成；
+ * 标注语料的格式与人民日报语料相同，包括嵌套标注的词语和标点符号。
+ */
+public class Synthetic_corpus {
+    // 可以使用的词性
+    private static final String[] TAGS = {"n", "v", "a", "d", "m", "q", "p", "u", "r", "nr", "ns", "nt", "vn", "c"};
+    // 嵌套标注词语的词性
+    private static final String[] COMPOUND_TAGS = {"nt", "nz", "ns"};
+    // 标点符号
+    private static final String[] PUNCTUATIONS = {"，", "。", "、", "“", "”", "（", "）", "：", "！", "？"};
+    // 词语长度的分布
+    private static final int[] WORD_LENGTHS = {1, 2, 2, 2, 3, 3, 4};
+    // 组成词语的字符数量，词库越大使用的字符越多，使得词语的前缀分布接近真实的词库
+    private static final int MIN_CHARS = 600;
+    // 词库外单字的比例
+    private static final double OOV_RATE = 0.05;
+    // 词库外单字所在的区间，与组成词语的字符不重叠
+    private static final char OOV_CHAR_BASE = 0x3400;
+
+    // 词库中的词语，按照生成的顺序排列
+    private final List<String> words;
+    // 每个词语的词性
+    private final Map<String, String[]> tags;
+    // 随机数生成器
+    private final Random random;
+
+    /**
+     * @param dict_size 词库的大小
+     * @param seed 随机种子
+     */
+    public Synthetic_corpus(int dict_size, long seed) {
+        random = new Random(seed);
+        int char_count = Math.max(MIN_CHARS, dict_size / 4);
+        tags = new LinkedHashMap<>(dict_size * 2);
+        while (tags.size() < dict_size) {
+            var builder = new StringBuilder();
+            int length = WORD_LENGTHS[random.nextInt(WORD_LENGTHS.length)];
+            for (int i = 0; i < length; ++i)
+                builder.append((char) (0x4e00 + random.nextInt(char_count)));
+            tags.putIfAbsent(builder.toString(), random.nextInt(3) == 0
+                    ? new String[]{random_tag(), random_tag()}
+                    : new String[]{random_tag()});
+        }
+        words = new ArrayList<>(tags.keySet());
+    }
+
+    /**
+     * 生成词库中的词语，每个词语带有随机的词性频率
+     * @return 词语列表
+     */
+    public List<Word> dictionary() {
+        List<Word> res = new ArrayList<>(words.size());
+        for (var word : words) {
+            var info = new Word_info(0);
+            for (var tag : tags.get(word))
+                info.add_type(tag, 1 + random.nextInt(50));
+            res.add(new Word(word, info));
+        }
+        return res;
+    }
+
+    /**
+     * 把词库写入文本文件，格式与{@link Utils.ACTrie#ACTrie(String)}读取的格式相同
+     * @param path 文件的地址
+     * @throws IOException 写入失败
+     */
+    public void write_dictionary(Path path) throws IOException {
+        try (var writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            for (var word : dictionary()) {
+                writer.write(word.text);
+                var info = word.info;
+                for (int i = 0; i < info.get_type_count(); ++i)
+                    writer.write("\t" + TagSet.name_of(info.get_tag(i)) + "\t" + info.get_freq(i));
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * 生成不带标注的句段
+     * @param length 句段的长度，单位为字符
+     * @return 句段
+     */
+    public String sentence(int length) {
+        var builder = new StringBuilder(length + 4);
+        while (builder.length() < length) {
+            if (random.nextDouble() < OOV_RATE)
+                builder.append((char) (OOV_CHAR_BASE + random.nextInt(256)));
+            else
+                builder.append(words.get(random.nextInt(words.size())));
+        }
+        builder.setLength(length);
+        return builder.toString();
+    }
+
+    /**
+     * 生成一组不带标注的句段
+     * @param count 句段的数量
+     * @param length 每个句段的长度
+     * @return 句段
+     */
+    public String[] sentences(int count, int length) {
+        var res = new String[count];
+        for (int i = 0; i < count; ++i)
+            res[i] = sentence(length);
+        return res;
+    }
+
+    /**
+     * 生成一行标注语料
+     * @param token_count 语料行中的单元数量
+     * @return 标注语料行
+     */
+    public String corpus_line(int token_count) {
+        var builder = new StringBuilder();
+        for (int i = 0; i < token_count; ++i) {
+            if (i > 0)
+                builder.append("  ");
+            double r = random.nextDouble();
+            if (r < 0.08) {
+                builder.append(PUNCTUATIONS[random.nextInt(PUNCTUATIONS.length)]);
+                if (random.nextBoolean())
+                    builder.append("/w");
+            } else if (r < 0.12) {
+                builder.append('[');
+                int inner = 2 + random.nextInt(2);
+                for (int j = 0; j < inner; ++j) {
+                    if (j > 0)
+                        builder.append(' ');
+                    tagged_word(builder);
+                }
+                builder.append("]/").append(COMPOUND_TAGS[random.nextInt(COMPOUND_TAGS.length)]);
+            } else {
+                tagged_word(builder);
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 把标注语料写入文本文件
+     * @param path 文件的地址
+     * @param line_count 语料的行数
+     * @throws IOException 写入失败
+     */
+    public void write_corpus(Path path, int line_count) throws IOException {
+        try (var writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < line_count; ++i) {
+                writer.write(corpus_line(3 + random.nextInt(23)));
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * 追加一个带有词性的词语
+     * @param builder 语料行
+     */
+    private void tagged_word(StringBuilder builder) {
+        var word = words.get(random.nextInt(words.size()));
+        var word_tags = tags.get(word);
+        builder.append(word).append('/').append(word_tags[random.nextInt(word_tags.length)]);
+    }
+
+    /**
+     * 随机选择一个词性
+     * @return 词性
+     */
+    private String random_tag() {
+        return TAGS[random.nextInt(TAGS.length)];
+    }
+}
@@ -0,0 +1,130 @@
+package Benchmark;
+
+import Dictionary.Segment;
+import Utils.ACTrie;
+import Utils.HMMTagger;
+import Utils.SegmentTagger;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 词性标注的基准测试：从语料训练模型，以及在训练得到的模型上进行标注。
+ */
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TaggerBenchmark {
+    // 预先生成的句段数量
+    private static final int SENTENCE_COUNT = 256;
+    // 词库的大小
+    private static final int DICT_SIZE = 10000;
+
+    /**
+     * 训练使用的语料文件
+     */
+    @State(Scope.Benchmark)
+    public static class Training {
+        @Param({"1000", "10000", "50000"})
+        public int corpus_lines;
+
+        @Param({"1", "4"})
+        public int shard_count;
+
+        Path corpus_path;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            corpus_path = Files.createTempFile("bench_corpus", ".txt");
+            new Synthetic_corpus(DICT_SIZE, 42).write_corpus(corpus_path, corpus_lines);
+        }
+
+        @TearDown(Level.Trial)
+        public void teardown() throws IOException {
+            Files.deleteIfExists(corpus_path);
+        }
+    }
+
+    /**
+     * 训练完成的模型和预先分词的句段
+     */
+    @State(Scope.Thread)
+    public static class Tagging {
+        @Param({"16", "128", "1024"})
+        public int sentence_length;
+
+        HMMTagger tagger;
+        SegmentTagger pipeline;
+        String[] sentences;
+        Segment[] segments;
+        int next = 0;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            var corpus = new Synthetic_corpus(DICT_SIZE, 42);
+            var corpus_path = Files.createTempFile("bench_corpus", ".txt");
+            try {
+                corpus.write_corpus(corpus_path, 10000);
+                tagger = new HMMTagger(corpus_path.toString());
+                tagger.buildup();
+            } finally {
+                Files.deleteIfExists(corpus_path);
+            }
+            pipeline = new SegmentTagger(tagger);
+
+            var trie = new ACTrie(corpus.dictionary());
+            sentences = corpus.sentences(SENTENCE_COUNT, sentence_length);
+            segments = new Segment[SENTENCE_COUNT];
+            for (int i = 0; i < SENTENCE_COUNT; ++i)
+                segments[i] = trie.forward_segment_sentence(sentences[i]);
+        }
+
+        /**
+         * 轮流选取下一个句段的编号
+         * @return 句段的编号
+         */
+        int next_index() {
+            int res = next;
+            next = (next + 1) % SENTENCE_COUNT;
+            return res;
+        }
+    }
+
+    /**
+     * 读取语料并完成模型的构建
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Measurement(iterations = 10)
+    public HMMTagger train(Training state) {
+        var tagger = new HMMTagger(state.corpus_path.toString(), state.shard_count);
+        tagger.buildup();
+        return tagger;
+    }
+
+    /**
+     * 对已经分词的句段进行标注
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public List<String> tag(Tagging state) {
+        return state.tagger.tag(state.segments[state.next_index()]);
+    }
+
+    /**
+     * 分词和标注的流水线
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int[] segment_and_tag(Tagging state) {
+        var tokens = new ACTrie.Token_buffer(state.sentence_length);
+        return state.pipeline.process(state.sentences[state.next_index()], tokens);
+    }
+}
@@ -0,0 +1,67 @@
+package Dictionary;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 词性登记表，把每一种词性字符串映射为一个从0开始连续的整数编号。编号在训练时首次遇到词性的时候分配，在整个进程中保持不变，
+ * 热路径上只使用整数编号，只有在需要的时候才通过{@code name_of}转换回字符串。线程安全。
+ */
+public class TagSet {
+    // 词性到编号
+    private static final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    // 编号到词性
+    private static volatile String[] names = new String[0];
+
+    private TagSet() {}
+
+    /**
+     * 登记一个词性，如果已经登记过则直接返回其编号
+     * @param tag 词性
+     * @return 词性的编号
+     */
+    public static int intern(String tag) {
+        var id = ids.get(tag);
+        if (id != null)
+            return id;
+        synchronized (TagSet.class) {
+            id = ids.get(tag);
+            if (id == null) {
+                id = names.length;
+                var new_names = Arrays.copyOf(names, id + 1);
+                new_names[id] = tag;
+                names = new_names;
+                ids.put(tag, id);
+            }
+            return id;
+        }
+    }
+
+    /**
+     * 获取一个词性的编号
+     * @param tag 词性
+     * @return 词性的编号，如果没有登记过则为-1
+     */
+    public static int id_of(String tag) {
+        var id = ids.get(tag);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * 获取编号对应的词性
+     * @param id 词性的编号
+     * @return 词性
+     */
+    public static String name_of(int id) {
+        return names[id];
+    }
+
+    /**
+     * 返回已经登记的词性的数量，所有编号都小于这个值
+     * @return 词性的数量
+     */
+    public static int size() {
+        return names.length;
+    }
+}
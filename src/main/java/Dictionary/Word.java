@@ -16,8 +16,7 @@ public class Word {
 
     public Word(Word w) {
         text = w.text;
-        info = new Word_info(0);
-        info.type_freqList.addAll(w.info.type_freqList);
+        info = w.info.copy();
     }
 
     /**
@@ -33,9 +32,7 @@ public class Word {
      * @return 深层拷贝
      */
     public Word copy() {
-        var newWord = new Word(text, new Word_info(info.type_freqList.size()));
-        newWord.info.type_freqList.addAll(info.type_freqList);
-        return newWord;
+        return new Word(text, info.copy());
     }
 
     @Override
@@ -1,14 +1,17 @@
 package Dictionary;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Objects;
+import java.util.Arrays;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
-// 这个类描述了一个单词的信息
+// 这个类描述了一个单词的信息，词性以{@link TagSet}中的编号保存。
+// 构建词库时使用可修改的形式，词库完成构建后通过pack()压缩为按词性编号排序的不可修改形式，查询通过二分查找进行，不产生任何对象。
 public class Word_info {
 
+    /**
+     * 词性和频率的字符串视图，仅在需要的时候生成
+     */
     public static class type_freq {
         public String type;
         public int freq;
@@ -19,11 +22,26 @@ public class Word_info {
         }
     }
 
-    // 储存了这个词语的每个词性出现的频率
-    protected List<type_freq> type_freqList;
+    // 这个词语的每个词性的编号
+    protected int[] tags;
+    // 与tags对应，每个词性出现的频率
+    protected int[] freqs;
+    // 词性的数量
+    protected int size;
+    // 指示是否已经压缩，压缩之后tags按升序排列，不可再修改
+    protected boolean packed;
+    // 压缩之后缓存的频率和
+    protected int total_freq;
+
+    // 没有词性的词语在压缩之后共用的空数组
+    private static final int[] EMPTY = new int[0];
 
     public Word_info(int length) {
-        type_freqList = new ArrayList<>(length);
+        tags = new int[Math.max(length, 1)];
+        freqs = new int[tags.length];
+        size = 0;
+        packed = false;
+        total_freq = 0;
     }
 
     /**
@@ -31,27 +49,43 @@ public class Word_info {
      * @param wi 词性信息
      */
     public void append_type(Word_info wi) {
-        for (var tf : wi.type_freqList) {
-            var it = type_freqList.iterator();
-            type_freq context = null;
-            boolean find = false;
-            while (it.hasNext()) {
-                context = it.next();
-                // do `=` not `==`
-                if (find = tf.type.equals(context.type))
-                    break;
-            }
-
-            if (find) {
-                context.freq += tf.freq;
-            } else {
-                add_type(tf.type, tf.freq);
-            }
-        }
+        for (int i = 0; i < wi.size; ++i)
+            add_type(wi.tags[i], wi.freqs[i]);
     }
 
+    /**
+     * 增添这个词的一个词性，如果已经有这个词性则增加其频率
+     * @param type 词性
+     * @param freq 频率
+     * @return this
+     */
     public Word_info add_type(String type, int freq) {
-        type_freqList.add(new type_freq(type, freq));
+        return add_type(TagSet.intern(type), freq);
+    }
+
+    /**
+     * 增添这个词的一个词性，如果已经有这个词性则增加其频率
+     * @param tag 词性的编号
+     * @param freq 频率
+     * @return this
+     */
+    public Word_info add_type(int tag, int freq) {
+        if (packed) {
+            System.err.println(this + " 已经压缩，不可再添加词性！");
+            return null;
+        }
+        int i = index_of(tag);
+        if (i >= 0) {
+            freqs[i] += freq;
+        } else {
+            if (size == tags.length) {
+                tags = Arrays.copyOf(tags, size << 1);
+                freqs = Arrays.copyOf(freqs, size << 1);
+            }
+            tags[size] = tag;
+            freqs[size] = freq;
+            ++size;
+        }
         return this;
     }
 
@@ -61,14 +95,40 @@ public class Word_info {
      * @return 频率
      */
     public int get_freq_of_type(String t) {
-        return type_freqList.stream()
-                .filter(x -> x.type.equals(t))
-                .map(x -> x.freq)
-                .reduce(0, Integer::sum);
+        int tag = TagSet.id_of(t);
+        return tag < 0 ? 0 : get_freq_of_type(tag);
+    }
+
+    /**
+     * 获取这个词作为编号为 {@code tag} 的词性出现的频率
+     * @param tag 词性的编号
+     * @return 频率
+     */
+    public int get_freq_of_type(int tag) {
+        int i = index_of(tag);
+        return i < 0 ? 0 : freqs[i];
     }
 
     public int get_type_count() {
-        return type_freqList.size();
+        return size;
+    }
+
+    /**
+     * 获取第 {@code i} 个词性的编号
+     * @param i 下标，小于{@code get_type_count()}
+     * @return 词性的编号
+     */
+    public int get_tag(int i) {
+        return tags[i];
+    }
+
+    /**
+     * 获取第 {@code i} 个词性的频率
+     * @param i 下标，小于{@code get_type_count()}
+     * @return 频率
+     */
+    public int get_freq(int i) {
+        return freqs[i];
     }
 
     /**
@@ -76,23 +136,93 @@ public class Word_info {
      * @return 频率和
      */
     public int get_type_sum_by_freq() {
-        return type_freqList.stream()
-                .map(x -> x.freq)
-                .reduce(0, Integer::sum);
+        if (packed)
+            return total_freq;
+        int sum = 0;
+        for (int i = 0; i < size; ++i)
+            sum += freqs[i];
+        return sum;
     }
 
     /**
-     * 返回一个列表的流
+     * 返回一个列表的流，流中的元素是字符串视图
      * @return 流
      */
     public Stream<type_freq> stream() {
-        return type_freqList.stream();
+        return IntStream.range(0, size)
+                .mapToObj(i -> new type_freq(TagSet.name_of(tags[i]), freqs[i]));
+    }
+
+    /**
+     * 压缩为不可修改的形式：按照词性编号排序，去掉多余的空间并缓存频率和。已经压缩过则什么也不做。
+     * @return this
+     */
+    public Word_info pack() {
+        if (packed)
+            return this;
+        if (size == 0) {
+            tags = freqs = EMPTY;
+        } else {
+            // 词性的数量很少，插入排序即可
+            var new_tags = Arrays.copyOf(tags, size);
+            var new_freqs = Arrays.copyOf(freqs, size);
+            for (int i = 1; i < size; ++i) {
+                int tag = new_tags[i], freq = new_freqs[i], j = i - 1;
+                for (; j >= 0 && new_tags[j] > tag; --j) {
+                    new_tags[j + 1] = new_tags[j];
+                    new_freqs[j + 1] = new_freqs[j];
+                }
+                new_tags[j + 1] = tag;
+                new_freqs[j + 1] = freq;
+            }
+            tags = new_tags;
+            freqs = new_freqs;
+        }
+        total_freq = get_type_sum_by_freq();
+        packed = true;
+        return this;
+    }
+
+    /**
+     * 是否已经压缩
+     * @return 是否已经压缩
+     */
+    public boolean is_packed() {
+        return packed;
+    }
+
+    /**
+     * 返回一个可修改的拷贝
+     * @return 拷贝
+     */
+    public Word_info copy() {
+        var wi = new Word_info(size);
+        System.arraycopy(tags, 0, wi.tags, 0, size);
+        System.arraycopy(freqs, 0, wi.freqs, 0, size);
+        wi.size = size;
+        return wi;
+    }
+
+    /**
+     * 查找词性在数组中的下标
+     * @param tag 词性的编号
+     * @return 下标，没有则为-1
+     */
+    private int index_of(int tag) {
+        if (packed) {
+            int i = Arrays.binarySearch(tags, 0, size, tag);
+            return i >= 0 ? i : -1;
+        }
+        for (int i = 0; i < size; ++i)
+            if (tags[i] == tag)
+                return i;
+        return -1;
     }
 
     @Override
     public String toString() {
         return String.format("%s",
-                type_freqList.stream()
+                stream()
                         .map(x -> String.format("%s %d", x.type, x.freq))
                         .collect(Collectors.toList())
         );
@@ -1,8 +1,14 @@
 package Utils;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
 import java.util.*;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -12,13 +18,15 @@ import Dictionary.*;
 /**
  * AC自动机，添加词语并进行建构后不可删除，用于在一个字符串上一次匹配多个字符，添加词语通过方法{@code add_word}或{@code add_words}或构造方法
  * {@code ACTrie(List{@literal <Word>} words)}进行，构建通过方法{@code buildup}进行。<br/>
- * TODO: 所有的containKey和get对可以优化
+ * 构建时trie树会被编译为不可变的双数组（base/check）形式，转移直接按照字符编码进行，编译完成之后用于构建的节点树即被释放。<br/>
+ * 完成构建的AC自动机可以通过{@code save}保存为二进制快照，之后通过{@code load}直接加载，不需要重新解析字典和建立fail边，
+ * 加载得到的双数组直接在映射的文件上读取，同一台机器上的多个进程共享页缓存中的同一份数据。
  * @author mine268
- * @version 1.0
+ * @version 1.1
  */
 public class ACTrie {
     /**
-     * AC自动机中的节点
+     * AC自动机中的节点，仅在构建阶段以及{@code travel_through}展示时使用
      */
     public static class ACTrie_node {
         /**
@@ -28,19 +36,21 @@ public class ACTrie {
             String fetchString(String key, ACTrie_node node);
         }
         // 子节点
-        public Map<String, ACTrie_node> next;
+        public Map<Character, ACTrie_node> next;
         // fail边
         public ACTrie_node fail;
-        // fail边连接到这个节点的节点
+        // fail边连接到这个节点的节点，仅在展示时填充
         public Set<ACTrie_node> fail_inv;
-        // 用于保存宽度优先搜索曾在第几步的时候抵达了这个节点
-        protected List<Integer> reach_index;
         // 指示该节点是否可以作为词语结尾
         public boolean terminate;
         // 如果有，那么则看一下当前词语对应的信息
         public Word word;
         // 节点深度
         protected int depth;
+        // 词语的编号，按照添加的顺序给出，-1表示不是词语结尾
+        protected int word_id;
+        // 编译为双数组之后该节点对应的状态
+        protected int state;
 
         /**
          * 常规的构造函数
@@ -49,27 +59,211 @@ public class ACTrie {
             next = new HashMap<>();
             fail = null;
             fail_inv = new HashSet<>();
-            reach_index = new LinkedList<>();
             terminate = false;
             word = null;
             depth = 0;
+            word_id = -1;
+            state = -1;
+        }
+    }
+
+    /**
+     * 模式匹配的结果缓冲区，以基础类型数组的形式记录每一个匹配到的词语的结尾位置、长度以及编号，可以在多次匹配之间重复使用。
+     * 缓冲区本身不是线程安全的，每个线程应当使用自己的缓冲区。
+     */
+    public static class Match_buffer {
+        // 词语结尾的位置（包含）
+        private int[] end;
+        // 词语的长度
+        private int[] length;
+        // 词语的编号
+        private int[] word_id;
+        // 结果的数量
+        private int size;
+
+        public Match_buffer() {
+            this(16);
+        }
+
+        public Match_buffer(int capacity) {
+            capacity = Math.max(capacity, 1);
+            end = new int[capacity];
+            length = new int[capacity];
+            word_id = new int[capacity];
+            size = 0;
         }
 
         /**
-         * 重置节点状态，即重置reach_index
+         * 添加一条结果
+         * @param e 结尾的位置
+         * @param len 词语长度
+         * @param id 词语编号
          */
-        public void reset_reach_index() {
-            reach_index.clear();
+        void add(int e, int len, int id) {
+            if (size == end.length) {
+                end = Arrays.copyOf(end, size << 1);
+                length = Arrays.copyOf(length, size << 1);
+                word_id = Arrays.copyOf(word_id, size << 1);
+            }
+            end[size] = e;
+            length[size] = len;
+            word_id[size] = id;
+            ++size;
+        }
+
+        /**
+         * 清空缓冲区，不释放空间
+         */
+        public void clear() {
+            size = 0;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public int end(int i) {
+            return end[i];
+        }
+
+        public int start(int i) {
+            return end[i] - length[i] + 1;
+        }
+
+        public int length(int i) {
+            return length[i];
+        }
+
+        public int word_id(int i) {
+            return word_id[i];
         }
     }
 
-    // 作为AC自动机的根节点
-    private final ACTrie_node root;
+    /**
+     * 分词结果缓冲区，以基础类型数组的形式记录每一个词语的起点、长度以及编号，编号为-1表示不在词库中的单字。
+     * 可以在多次分词之间重复使用，需要时再通过{@link ACTrie#to_segment}生成{@link Segment}。不是线程安全的。
+     */
+    public static class Token_buffer {
+        // 词语的起点
+        private int[] start;
+        // 词语的长度
+        private int[] length;
+        // 词语的编号
+        private int[] word_id;
+        // 词语的数量
+        private int size;
+
+        public Token_buffer() {
+            this(16);
+        }
+
+        public Token_buffer(int capacity) {
+            capacity = Math.max(capacity, 1);
+            start = new int[capacity];
+            length = new int[capacity];
+            word_id = new int[capacity];
+            size = 0;
+        }
+
+        /**
+         * 添加一个词语
+         * @param s 起点
+         * @param len 长度
+         * @param id 词语编号，-1表示不在词库中
+         */
+        public void add(int s, int len, int id) {
+            if (size == start.length) {
+                start = Arrays.copyOf(start, size << 1);
+                length = Arrays.copyOf(length, size << 1);
+                word_id = Arrays.copyOf(word_id, size << 1);
+            }
+            start[size] = s;
+            length[size] = len;
+            word_id[size] = id;
+            ++size;
+        }
+
+        /**
+         * 清空缓冲区，不释放空间
+         */
+        public void clear() {
+            size = 0;
+        }
+
+        /**
+         * 把词语的顺序倒过来，用于逆向匹配之后恢复正序
+         */
+        void reverse() {
+            for (int i = 0, j = size - 1; i < j; ++i, --j) {
+                int t = start[i]; start[i] = start[j]; start[j] = t;
+                t = length[i]; length[i] = length[j]; length[j] = t;
+                t = word_id[i]; word_id[i] = word_id[j]; word_id[j] = t;
+            }
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public int start(int i) {
+            return start[i];
+        }
+
+        public int length(int i) {
+            return length[i];
+        }
+
+        public int word_id(int i) {
+            return word_id[i];
+        }
+    }
+
+    // check中表示位置未被使用
+    private static final int FREE = -1;
+    // check中表示根节点所占用的位置
+    private static final int ROOT_CHECK = -2;
+    // 根节点的状态
+    private static final int ROOT = 0;
+    // 快照文件的魔数，即"ACTR"
+    private static final int SNAPSHOT_MAGIC = 0x41435452;
+    // 快照文件的版本
+    private static final int SNAPSHOT_VERSION = 1;
+
+    // 作为AC自动机的根节点，完成buildup之后释放
+    private ACTrie_node root;
+    // 构建阶段按照添加顺序记录的词语，完成buildup之后释放
+    private List<Word> word_list;
+    // 构建阶段的节点数量
+    private int node_count;
     // 总词数（不包含词频）
     private int total_vocab;
     // 指示是否可以添加词语，false表示可以，true表示不可以，因为此时已经建立了fail边
     private boolean change_lock;
 
+    // 以下的状态数组在buildup时包装堆上的数组，通过load加载时是映射的快照文件上的只读视图
+    // 双数组的base，状态s经过字符c转移到状态base[s]+c
+    private IntBuffer base;
+    // 双数组的check，check[t]为状态t的父状态，FREE表示该位置没有状态
+    private IntBuffer check;
+    // 每个状态的fail边
+    private IntBuffer fail;
+    // 每个状态的词典后缀边，指向沿fail边（不含自身）遇到的第一个可以作为词语结尾的状态，没有则为ROOT
+    private IntBuffer out;
+    // 每个状态对应的词语编号，-1表示该状态不能作为词语结尾
+    private IntBuffer word_of;
+    // 每个状态的深度
+    private IntBuffer depth;
+    // 状态数组的长度
+    private int state_count;
+    // 编号对应的词语
+    private Word[] words;
+    // 编号对应的词语的对数一元概率，buildup时根据词频计算
+    private float[] log_prob;
+    // 词库外单字的对数一元概率
+    private float log_prob_oov;
+    // 一元概率的分母，即总词频加上词语数量再加一
+    private long prob_total;
+
     /**
      * 常规的构造函数，构造的AC自动机可以使用{@code add_word}和{@code add_words}手动添加词语
      */
@@ -77,6 +271,8 @@ public class ACTrie {
         change_lock = false;
         root = new ACTrie_node();
         root.fail = root;
+        word_list = new ArrayList<>();
+        node_count = 1;
         total_vocab = 0;
     }
 
@@ -85,16 +281,11 @@ public class ACTrie {
      * @param words 提供的词语
      */
     public ACTrie(List<Word> words) {
-        change_lock = false;
-        root = new ACTrie_node();
-        root.fail = root;
-        total_vocab = 0;
+        this();
 
         // 把`words`中的所有词语添加到AC自动机中
         add_words(words);
         buildup();
-
-        change_lock = true;
     }
 
     /**
@@ -102,10 +293,7 @@ public class ACTrie {
      * @param dict_path 字典文件的地址
      */
     public ACTrie(String dict_path) {
-        change_lock = false;
-        root = new ACTrie_node();
-        root.fail = root;
-        total_vocab = 0;
+        this();
 
         FileReader dict_reader = null;
         try {
@@ -158,35 +346,37 @@ public class ACTrie {
         ACTrie_node current = root;
         int index = 0;
         while (index < word.text.length()) {
-            String on_word = String.valueOf(word.text.charAt(index));
-            if (current.next.containsKey(on_word))
-                current = current.next.get(on_word);
-            else
+            var next_node = current.next.get(word.text.charAt(index));
+            if (next_node == null)
                 break;
+            current = next_node;
 
             ++index;
         }
 
         // #2 开始新增边
         while (index < word.text.length()) {
-            String on_word = String.valueOf(word.text.charAt(index));
             ACTrie_node next_node = new ACTrie_node();
             // 这里我们建立了当前新字对应下一个节点
-            current.next.put(on_word, next_node);
+            current.next.put(word.text.charAt(index), next_node);
             next_node.depth = current.depth + 1;
+            ++node_count;
 
             current = next_node;
             ++index;
         }
 
         // #3 设置terminate和w_info
-        if (!current.terminate)
+        if (!current.terminate) {
             // 总词数加一
             total_vocab += 1;
+            current.word_id = word_list.size();
+        }
         current.terminate = true;
-        if (current.word == null)
+        if (current.word == null) {
             current.word = word.copy();
-        else
+            word_list.add(current.word);
+        } else
             current.word.append_info(word.info);
 
         return this;
@@ -209,7 +399,7 @@ public class ACTrie {
     }
 
     /**
-     * 运行这个方法将完成AC自动机的构建，即建立fail边，建立后不可以再继续添加词语
+     * 运行这个方法将完成AC自动机的构建，即建立fail边并编译为双数组，建立后不可以再继续添加词语
      */
     public void buildup() {
         // 建立fail边
@@ -223,75 +413,300 @@ public class ACTrie {
                     var key = next.getKey();
                     var node = next.getValue();
                     var fail = current.fail;
-                    boolean flag;
-                    while (!(flag = fail.next.containsKey(key))
+                    ACTrie_node res;
+                    while ((res = fail.next.get(key)) == null
                             && fail != root)
                         fail = fail.fail;
-                    var res = fail.next.get(key);
-                    if (flag && res != node) {
-                        node.fail = res;
-                        res.fail_inv.add(node);
-                    } else {
-                        node.fail = root;
-                        root.fail_inv.add(node);
-                    }
+                    node.fail = res != null && res != node ? res : root;
 
                     bfs_queue.add(node);
                 }
             }
 
+            compile();
             change_lock = true;
         }
     }
 
+    /**
+     * 是否已经完成构建
+     * @return 如果已经运行过buildup则为{@code true}
+     */
+    public boolean is_built() {
+        return change_lock;
+    }
+
+    /**
+     * 把节点树编译为双数组，编译完成之后释放节点树。<br/>
+     * 按照宽度优先的顺序为每一个节点的子节点寻找第一个可用的base，使得所有子节点的位置都没有被占用。
+     */
+    private void compile() {
+        List<ACTrie_node> order = new ArrayList<>(node_count);
+        var base = new int[node_count + Character.MAX_VALUE + 1];
+        var check = new int[base.length];
+        Arrays.fill(check, FREE);
+        check[ROOT] = ROOT_CHECK;
+        root.state = ROOT;
+
+        // 在此之前的位置都已经被占用
+        int next_free = 1;
+        // 使用到的最大位置
+        int max_state = ROOT;
+        Queue<ACTrie_node> bfs_queue = new ArrayDeque<>();
+        bfs_queue.add(root);
+        while (!bfs_queue.isEmpty()) {
+            var node = bfs_queue.poll();
+            order.add(node);
+            if (node.next.isEmpty())
+                continue;
+
+            var keys = new char[node.next.size()];
+            int key_count = 0;
+            for (var key : node.next.keySet())
+                keys[key_count++] = key;
+            Arrays.sort(keys);
+
+            while (check[next_free] != FREE)
+                ++next_free;
+            int b;
+            int pos = Math.max(next_free, keys[0] + 1);
+            search:
+            for (;; ++pos) {
+                int need = pos + keys[key_count - 1] - keys[0] + 1;
+                if (need > check.length) {
+                    int new_size = Math.max(need, check.length + (check.length >> 1));
+                    int old_size = check.length;
+                    base = Arrays.copyOf(base, new_size);
+                    check = Arrays.copyOf(check, new_size);
+                    Arrays.fill(check, old_size, new_size, FREE);
+                }
+                if (check[pos] != FREE)
+                    continue;
+                b = pos - keys[0];
+                for (int i = 1; i < key_count; ++i)
+                    if (check[b + keys[i]] != FREE)
+                        continue search;
+                break;
+            }
+
+            base[node.state] = b;
+            for (var key : keys) {
+                var child = node.next.get(key);
+                child.state = b + key;
+                check[child.state] = node.state;
+                max_state = Math.max(max_state, child.state);
+                bfs_queue.add(child);
+            }
+        }
+
+        int size = max_state + 1;
+        base = Arrays.copyOf(base, size);
+        check = Arrays.copyOf(check, size);
+        var fail = new int[size];
+        var out = new int[size];
+        var word_of = new int[size];
+        var depth = new int[size];
+        Arrays.fill(word_of, -1);
+        for (var node : order) {
+            fail[node.state] = node.fail.state;
+            word_of[node.state] = node.word_id;
+            depth[node.state] = node.depth;
+        }
+        // 宽度优先的顺序保证了计算out[s]时out[fail[s]]已经计算完成
+        for (var node : order) {
+            int f = fail[node.state];
+            out[node.state] = node == root ? ROOT : (word_of[f] >= 0 ? f : out[f]);
+        }
+        this.base = IntBuffer.wrap(base);
+        this.check = IntBuffer.wrap(check);
+        this.fail = IntBuffer.wrap(fail);
+        this.out = IntBuffer.wrap(out);
+        this.word_of = IntBuffer.wrap(word_of);
+        this.depth = IntBuffer.wrap(depth);
+        state_count = size;
+
+        words = word_list.toArray(new Word[0]);
+        for (var word : words)
+            word.info.pack();
+        compute_log_prob();
+
+        // 释放节点树
+        root = null;
+        word_list = null;
+    }
+
+    /**
+     * 根据词频计算每个词语的对数一元概率，使用加一平滑：P(w) = (freq(w) + 1) / (总词频 + 词语数量 + 1)，
+     * 词库外的单字视为词频为0
+     */
+    private void compute_log_prob() {
+        long total = words.length + 1;
+        for (var word : words)
+            total += word.info.get_type_sum_by_freq();
+        prob_total = total;
+        double log_total = Math.log(total);
+        log_prob = new float[words.length];
+        for (int i = 0; i < words.length; ++i)
+            log_prob[i] = (float) (Math.log(words[i].info.get_type_sum_by_freq() + 1) - log_total);
+        log_prob_oov = (float) -log_total;
+    }
+
+    /**
+     * 双数组上的goto转移
+     * @param state 当前状态
+     * @param c 转移的字符
+     * @return 转移到的状态，如果没有对应的边则为-1
+     */
+    private int transit(int state, char c) {
+        int t = base.get(state) + c;
+        return t < state_count && check.get(t) == state ? t : -1;
+    }
+
     /**
      * 广度遍历输出整棵树，第一个输出的节点是root节点，每个节点的输出的字符串来源于接口，空字符串默认不输出。
      * @param str_func 输出每个节点信息的函数
      */
     public void travel_through(ACTrie_node.ACTrie_node_stringer str_func) {
-        System.out.println(str_func.fetchString("$$", root));
+        var start = change_lock ? node_view() : root;
+        System.out.println(str_func.fetchString("$$", start));
         Queue<ACTrie_node> bfs_queue = new ArrayDeque<>();
-        bfs_queue.add(root);
+        bfs_queue.add(start);
         while (!bfs_queue.isEmpty()) {
             var top = bfs_queue.poll();
             top.next.forEach((key, val) -> {
                 bfs_queue.add(val);
-                var line = str_func.fetchString(key, val);
+                var line = str_func.fetchString(String.valueOf(key), val);
                 if (!line.equals(""))
                     System.out.println(line);
             });
         }
     }
 
+    /**
+     * 从双数组还原出一棵节点树，仅用于展示
+     * @return 还原出的根节点
+     */
+    private ACTrie_node node_view() {
+        var views = new ACTrie_node[state_count];
+        for (int s = 0; s < state_count; ++s) {
+            if (check.get(s) == FREE)
+                continue;
+            var view = views[s] = new ACTrie_node();
+            view.state = s;
+            view.depth = depth.get(s);
+            view.word_id = word_of.get(s);
+            view.terminate = word_of.get(s) >= 0;
+            view.word = view.terminate ? words[word_of.get(s)] : null;
+        }
+        for (int s = 0; s < state_count; ++s) {
+            if (views[s] == null)
+                continue;
+            views[s].fail = views[fail.get(s)];
+            if (s != ROOT) {
+                views[check.get(s)].next.put((char) (s - base.get(check.get(s))), views[s]);
+                views[fail.get(s)].fail_inv.add(views[s]);
+            }
+        }
+        return views[ROOT];
+    }
+
     /**
      * 对字符串进行模式匹配，返回所有字典中出现了的词语的位置
      * @param str 要进行匹配的字符串
      * @return 返回出现了的词语的位置
      */
     public List<Seg_unit> match_patterns_for(String str) {
-        //  利用AC自动机对串str进行模式匹配，返回匹配得到的串
-        var current = root;
-        var string = str.toCharArray();
+        var hits = match_patterns_for(str, new Match_buffer());
+        List<Seg_unit> result = new ArrayList<>(hits.size());
+        for (int i = 0; i < hits.size(); ++i)
+            result.add(new Seg_unit(words[hits.word_id(i)], hits.start(i)));
+        return result;
+    }
+
+    /**
+     * 对字符串进行模式匹配，把所有出现了的词语写入{@code result}。匹配过程不修改自动机的任何状态，因此同一个完成构建的AC自动机可以
+     * 同时被多个线程使用，只要每个线程使用自己的{@code result}。<br/>
+     * 匹配的结果按照词语的结尾位置升序排列，结尾位置相同的按照长度降序排列。
+     * @param str 要进行匹配的字符串
+     * @param result 用于保存结果的缓冲区，写入之前会被清空
+     * @return {@code result}
+     */
+    public Match_buffer match_patterns_for(CharSequence str, Match_buffer result) {
+        result.clear();
+        if (!change_lock) {
+            System.err.println(this + " 尚未完成buildup，无法进行匹配！");
+            return result;
+        }
+        int current = ROOT;
 
         // 表示当前处理的字符串是从0~cur_ind-1的位置
-        for (int cur_ind = 0; cur_ind < string.length; ++cur_ind) {
-            var on_char = String.valueOf(string[cur_ind]);
-            if (current.next.containsKey(on_char)) {
-                current = current.next.get(on_char);
-            } else {
-                boolean flag;
-                current = current.fail;
-                while (!(flag = current.next.containsKey(on_char))
-                        && current != root)
-                    current = current.fail;
-                if (flag)
-                    current = current.next.get(on_char);
-                // else assert current == root
-            }
-            current.reach_index.add(cur_ind);
+        for (int cur_ind = 0; cur_ind < str.length(); ++cur_ind) {
+            current = next_state(current, str.charAt(cur_ind));
+
+            // 沿着词典后缀边输出所有以当前位置结尾的词语
+            for (int hit = first_output(current); hit != ROOT; hit = out.get(hit))
+                result.add(cur_ind, depth.get(hit), word_of.get(hit));
         }
 
-        return collect_result();
+        return result;
+    }
+
+    /**
+     * 根状态，逐字匹配时作为初始状态
+     * @return 根状态
+     */
+    static int root_state() {
+        return ROOT;
+    }
+
+    /**
+     * 自动机读入一个字符之后的状态，必要时沿fail边回退
+     * @param state 当前状态
+     * @param c 读入的字符
+     * @return 下一个状态
+     */
+    int next_state(int state, char c) {
+        int next;
+        while ((next = transit(state, c)) < 0 && state != ROOT)
+            state = fail.get(state);
+        // 如果next < 0，那么state == ROOT
+        return next < 0 ? ROOT : next;
+    }
+
+    /**
+     * 以当前位置结尾的第一个词语所在的状态，之后的词语通过{@code next_output}获取，返回根状态表示没有更多的词语
+     * @param state 当前状态
+     * @return 词语所在的状态
+     */
+    int first_output(int state) {
+        return word_of.get(state) >= 0 ? state : out.get(state);
+    }
+
+    /**
+     * 沿词典后缀边获取下一个词语所在的状态
+     * @param state 上一个词语所在的状态
+     * @return 词语所在的状态，返回根状态表示没有更多的词语
+     */
+    int next_output(int state) {
+        return out.get(state);
+    }
+
+    /**
+     * 状态的深度，即从根状态到该状态的字符数
+     * @param state 状态
+     * @return 深度
+     */
+    int depth_of(int state) {
+        return depth.get(state);
+    }
+
+    /**
+     * 状态对应的词语编号
+     * @param state 状态
+     * @return 词语编号，-1表示该状态不能作为词语结尾
+     */
+    int word_id_of(int state) {
+        return word_of.get(state);
     }
 
     /**
@@ -300,66 +715,94 @@ public class ACTrie {
      * @return 词语信息，如果没有这个词语则返回 {@code null}
      */
     public final Word get_info_of_word(String text) {
-        var current = root;
-
-        for (int cur_ind = 0; cur_ind < text.length(); ++cur_ind) {
-            var on_char = String.valueOf(text.charAt(cur_ind));
-            current = current.next.get(on_char);
-            if (current == null)
-                break;
+        if (!change_lock) {
+            var current = root;
+            for (int cur_ind = 0; cur_ind < text.length() && current != null; ++cur_ind)
+                current = current.next.get(text.charAt(cur_ind));
+            return current != null && current.terminate ? current.word : null;
         }
 
-        if (current != null && current.terminate)
-            return current.word;
-        else
-            return null;
+        int word_id = get_id_of_word(text);
+        return word_id >= 0 ? words[word_id] : null;
     }
 
     /**
-     * 从根节点角度获得结果
-     * @return 统计得到的结果
+     * 获取某一个词语的编号，只能在完成构建之后使用
+     * @param text 词语
+     * @return 词语编号，如果没有这个词语则返回-1
      */
-    private List<Seg_unit> collect_result() {
-        var result = collect_result_on(root);
-        clear_reach_index();
-        return result;
+    public final int get_id_of_word(CharSequence text) {
+        return get_id_of_word(text, 0, text.length());
     }
 
     /**
-     * 清空所有节点上的match index
+     * 获取句段中[from, to)范围内的词语的编号，只能在完成构建之后使用
+     * @param text 句段
+     * @param from 词语的开头
+     * @param to 词语的结尾
+     * @return 词语编号，如果没有这个词语则返回-1
      */
-    private void clear_reach_index() {
-        Queue<ACTrie_node> bfs_queue = new ArrayDeque<>();
-        bfs_queue.add(root);
-        while (!bfs_queue.isEmpty()) {
-            var top = bfs_queue.poll();
-            top.reset_reach_index();
-            bfs_queue.addAll(top.next.values());
+    public final int get_id_of_word(CharSequence text, int from, int to) {
+        int current = ROOT;
+        for (int cur_ind = from; cur_ind < to && current >= 0; ++cur_ind)
+            current = transit(current, text.charAt(cur_ind));
+
+        return current >= 0 ? word_of.get(current) : -1;
+    }
+
+    /**
+     * 从{@code start}开始沿着goto边匹配最长的词语，只能在完成构建之后使用
+     * @param text 句段
+     * @param start 开始的位置
+     * @return 最长的词语结尾对应的状态，词语的长度为{@code depth_of}，没有匹配到词语则为-1
+     */
+    int longest_match_state(CharSequence text, int start) {
+        int state = ROOT;
+        int best = -1;
+        for (int i = start; i < text.length(); ++i) {
+            state = transit(state, text.charAt(i));
+            if (state < 0)
+                break;
+            if (word_of.get(state) >= 0)
+                best = state;
         }
+        return best;
     }
 
     /**
-     * 递归地统计最终结果
-     * @param node 依据哪一个节点统计
-     * @return 统计到的结果
+     * 从{@code end}开始向前沿着goto边匹配最长的词语，只能在{@code reversed}得到的逆序AC自动机上调用
+     * @param text 句段
+     * @param end 词语的结尾（不含）
+     * @return 最长的词语开头对应的状态，词语的长度为{@code depth_of}，没有匹配到词语则为-1
      */
-    private List<Seg_unit> collect_result_on(ACTrie_node node) {
-        if (node.fail_inv.isEmpty()) {
-            if (!node.terminate)
-                return new LinkedList<>();
-            else
-                return node.reach_index.stream()
-                        .map(end -> new Seg_unit(node.word, end - node.word.text.length() + 1))
-                        .collect(Collectors.toList());
-        } else {
-            var result = node.fail_inv.stream()
-                    .map(this::collect_result_on)
-                    .reduce(new LinkedList<>(), (res, ele) -> { res.addAll(ele); return res; });
-            if (node.terminate)
-                node.reach_index
-                        .forEach(end -> result.add(new Seg_unit(node.word, end - node.word.text.length() + 1)));
-            return result;
+    int longest_match_state_backward(CharSequence text, int end) {
+        int state = ROOT;
+        int best = -1;
+        for (int i = end - 1; i >= 0; --i) {
+            state = transit(state, text.charAt(i));
+            if (state < 0)
+                break;
+            if (word_of.get(state) >= 0)
+                best = state;
         }
+        return best;
+    }
+
+    /**
+     * 一元概率的分母，即总词频加上词语数量再加一，词库外单字的一元概率为其倒数
+     * @return 一元概率的分母
+     */
+    long prob_total() {
+        return prob_total;
+    }
+
+    /**
+     * 获取编号对应的词语
+     * @param word_id 词语编号
+     * @return 词语
+     */
+    public final Word get_word(int word_id) {
+        return words[word_id];
     }
 
     /**
@@ -368,102 +811,368 @@ public class ACTrie {
      * @return 分词结果
      */
     public Segment forward_segment_sentence(String text) {
-        var result_seg = new Segment();
-        var words = match_patterns_for(text);
-        if (words.size() == 0)
-            return result_seg;
-
-        // 按照index排序，方便生成segment
-        words.sort((x, y) -> {
-            if (x.index != y.index)
-                return x.index - y.index;
-            else
-                return y.word.text.length() - x.word.text.length();
-        });
-        var it = words.iterator();
-        var curr_seg = it.next();
-        int first_index = 0;
-
-        do {
-            if (first_index < curr_seg.index) {
-                result_seg.add_segment(
-                        new Seg_unit(new Word(text.substring(first_index, first_index + 1)), first_index));
-                ++first_index;
-            } else {
-                result_seg.add_segment(curr_seg);
-                first_index += curr_seg.word.text.length();
+        return to_segment(text, forward_segment_sentence(text, new Token_buffer(text.length())));
+    }
+
+    /**
+     * 基于正向最长匹配进行分词，结果以(起点, 长度, 词语编号)的形式写入{@code result}。<br/>
+     * 从每一个起点出发只沿着goto边向下走，记录走到的最深的词语结尾，走不下去时就输出这个词语，没有则输出单字。
+     * 除了{@code result}扩容之外不分配任何对象，可以由多个线程同时调用，只要每个线程使用自己的{@code result}。
+     * @param text 进行分词的句段
+     * @param result 用于保存结果的缓冲区，写入之前会被清空
+     * @return {@code result}
+     */
+    public Token_buffer forward_segment_sentence(CharSequence text, Token_buffer result) {
+        result.clear();
+        int length = text.length();
+        int start = 0;
+        while (start < length) {
+            int state = longest_match_state(text, start);
+            int best_len = state < 0 ? 1 : depth.get(state);
+            result.add(start, best_len, state < 0 ? -1 : word_of.get(state));
+            start += best_len;
+        }
+        return result;
+    }
 
-                while (it.hasNext() && curr_seg.index < first_index)
-                    curr_seg = it.next();
+    /**
+     * 构建一个由所有词语逆序之后组成的AC自动机，用于逆向最长匹配。词语按照编号的顺序添加，因此两个自动机中同一个词语的编号相同。
+     * 逆序自动机中的词语不保存词性信息。
+     * @return 完成构建的逆序AC自动机
+     */
+    public ACTrie reversed() {
+        var reversed = new ACTrie();
+        for (var word : words) {
+            var chars = word.text.toCharArray();
+            for (int i = 0, j = chars.length - 1; i < j; ++i, --j) {
+                char c = chars[i];
+                chars[i] = chars[j];
+                chars[j] = c;
             }
-        } while (first_index < text.length() && it.hasNext());
+            reversed.add_word(new Word(new String(chars)));
+        }
+        reversed.buildup();
+        return reversed;
+    }
 
-        while (first_index < text.length()) {
-            result_seg.add_segment(
-                    new Seg_unit(new Word(text.substring(first_index, first_index + 1)), first_index)
-            );
-            ++first_index;
+    /**
+     * 基于逆向最长匹配进行分词，只能在{@code reversed}得到的逆序AC自动机上调用。从句段的末尾开始，每次从当前的终点出发向前沿着goto边
+     * 走，记录走到的最深的词语结尾。结果按照起点升序写入{@code result}，其中的词语编号与原自动机一致。
+     * @param text 进行分词的句段
+     * @param result 用于保存结果的缓冲区，写入之前会被清空
+     * @return {@code result}
+     */
+    Token_buffer backward_segment_reversed(CharSequence text, Token_buffer result) {
+        result.clear();
+        int end = text.length();
+        while (end > 0) {
+            int state = longest_match_state_backward(text, end);
+            int best_len = state < 0 ? 1 : depth.get(state);
+            result.add(end - best_len, best_len, state < 0 ? -1 : word_of.get(state));
+            end -= best_len;
         }
+        result.reverse();
+        return result;
+    }
 
-        return result_seg;
+    /**
+     * 根据分词结果生成{@link Segment}，词库中的词语直接使用词库中的{@link Word}，单字新建{@link Word}
+     * @param text 进行分词的句段
+     * @param tokens 分词结果
+     * @return 分词结果
+     */
+    public Segment to_segment(CharSequence text, Token_buffer tokens) {
+        var segment = new Segment(tokens.size());
+        for (int i = 0; i < tokens.size(); ++i) {
+            int start = tokens.start(i);
+            var word = tokens.word_id(i) >= 0
+                    ? words[tokens.word_id(i)]
+                    : new Word(text.subSequence(start, start + tokens.length(i)).toString());
+            segment.add_segment(new Seg_unit(word, start));
+        }
+        return segment;
     }
 
     /**
      * 使用AC自动机进行分词操作，已排序，基于最少词语的原则，具体如下<br/>
-     * 首先进行完全分词，获得每一个分词的结果，从中选取不相交的词语使得分词的数量加上没有得到分词的字的数量之和最小
+     * 首先进行完全分词，获得每一个分词的结果，从中选取不相交的词语使得分词的数量加上没有得到分词的字的数量之和最小。<br/>
+     * 匹配结果本身就是按照结尾位置排列的，因此可以直接按照结尾位置进行动态规划，时间复杂度为O(n + 匹配到的词语数)。
+     * 代价相同时选择起点更靠前（即更长）的词语。
      * @param text 进行分词的句段
      * @return 分词结果
      */
     public Segment shortest_segment_sentence(String text) {
-        // 每一个元素表示一个节点，上面的边表示以这个字开头的词语
-        List<List<Seg_unit>> edges = new ArrayList<>(text.length());
-        for (int i = 0; i < text.length(); ++i)
-            edges.add(new LinkedList<>());
-        var segment = match_patterns_for(text);
-        segment.forEach(ele -> edges.get(ele.index).add(ele) );
-
-        // 考虑0~i-1长度的句子，最后一个分词对应path_seg[i]
-        var path_seg = new Seg_unit[text.length() + 1];
+        int length = text.length();
+        if (length == 0)
+            return new Segment();
+        var hits = match_patterns_for(text, new Match_buffer(length));
+
         // 考虑0~i-1长度的句子，其最短分词长度为path_length[i]
-        var path_length = new int[text.length() + 1];
-        path_seg[1] = null;
+        var path_length = new int[length + 1];
+        // 考虑0~i-1长度的句子，最后一个分词对应hits中的第path_hit[i]个结果，-1表示最后一个字单独成词
+        var path_hit = new int[length + 1];
         path_length[1] = 1;
-        for (int i = 2; i <= text.length(); ++i) {
+        path_hit[1] = -1;
+        // 第一个结尾位置不小于1的匹配结果
+        int h = 0;
+        while (h < hits.size() && hits.end(h) < 1)
+            ++h;
+        for (int i = 2; i <= length; ++i) {
             int tmp_len = Integer.MAX_VALUE;
-            Seg_unit tmp_seg = null;
-            Optional<Seg_unit> edge;
-            for (int j = 0; j < i; ++j) {
-                int finalI = i;
-                int finalJ = j;
-                edge = edges.get(j).stream()
-                        .filter(e -> finalJ + e.word.text.length() == finalI)
-                        .findFirst();
-                if ((i - j == 1 || edge.isPresent())
-                        && tmp_len > path_length[j] + 1) {
+            int tmp_hit = -1;
+            boolean single = false;
+            // 以i-1结尾的词语按照长度降序排列，即起点升序
+            for (; h < hits.size() && hits.end(h) == i - 1; ++h) {
+                int j = hits.start(h);
+                single |= j == i - 1;
+                if (tmp_len > path_length[j] + 1) {
                     tmp_len = path_length[j] + 1;
-                    tmp_seg = edge.orElse(null);
+                    tmp_hit = h;
                 }
             }
+            // 最后一个字单独成词
+            if (!single && tmp_len > path_length[i - 1] + 1) {
+                tmp_len = path_length[i - 1] + 1;
+                tmp_hit = -1;
+            }
             path_length[i] = tmp_len;
-            path_seg[i] = tmp_seg;
+            path_hit[i] = tmp_hit;
         }
 
-        // 逆序输出，即Segment里头的seg_unit是正序的
-        Stack<Seg_unit> result_stack = new Stack<>();
-        for (int i = text.length(); i > 0;) {
-            if (path_seg[i] == null) {
-                result_stack.push(new Seg_unit(new Word(text.substring(i - 1, i)), i - 1));
+        // 逆序生成，再正序放入Segment
+        var units = new Seg_unit[path_length[length]];
+        int count = units.length;
+        for (int i = length; i > 0;) {
+            int hit = path_hit[i];
+            if (hit < 0) {
+                units[--count] = new Seg_unit(new Word(text.substring(i - 1, i)), i - 1);
                 --i;
             } else {
-                result_stack.push(path_seg[i]);
-                i -= path_seg[i].word.text.length();
+                units[--count] = new Seg_unit(words[hits.word_id(hit)], hits.start(hit));
+                i -= hits.length(hit);
             }
         }
-        Segment result_seg = new Segment(result_stack.size());
-        while (!result_stack.empty())
-            result_seg.add_segment(result_stack.pop());
 
-        return result_seg;
+        return new Segment(Arrays.asList(units));
+    }
+
+    /**
+     * 基于最大概率进行分词，见{@code max_probability_segment_sentence(CharSequence, Token_buffer)}
+     * @param text 进行分词的句段
+     * @return 分词结果
+     */
+    public Segment max_probability_segment_sentence(String text) {
+        return to_segment(text, max_probability_segment_sentence(text, new Token_buffer(text.length())));
+    }
+
+    /**
+     * 基于最大概率进行分词。首先进行完全分词得到词图，在词图上选取一条路径使得路径上的词语的对数一元概率之和最大，
+     * 词库外的字单独成词。每个词语的对数概率在buildup时已经计算好，动态规划中只需要做加法，时间复杂度为O(n + 匹配到的词语数)。
+     * 概率相同时选择起点更靠前（即更长）的词语。
+     * @param text 进行分词的句段
+     * @param result 用于保存结果的缓冲区，写入之前会被清空
+     * @return {@code result}
+     */
+    public Token_buffer max_probability_segment_sentence(CharSequence text, Token_buffer result) {
+        result.clear();
+        int length = text.length();
+        if (length == 0)
+            return result;
+        var hits = match_patterns_for(text, new Match_buffer(length));
+
+        // 考虑0~i-1长度的句子，其最大对数概率为path_prob[i]
+        var path_prob = new float[length + 1];
+        // 考虑0~i-1长度的句子，最后一个分词对应hits中的第path_hit[i]个结果，-1表示最后一个字是词库外的单字
+        var path_hit = new int[length + 1];
+        int h = 0;
+        for (int i = 1; i <= length; ++i) {
+            float tmp_prob = Float.NEGATIVE_INFINITY;
+            int tmp_hit = -1;
+            boolean single = false;
+            // 以i-1结尾的词语按照长度降序排列，即起点升序
+            for (; h < hits.size() && hits.end(h) == i - 1; ++h) {
+                int j = hits.start(h);
+                single |= j == i - 1;
+                float prob = path_prob[j] + log_prob[hits.word_id(h)];
+                if (prob > tmp_prob) {
+                    tmp_prob = prob;
+                    tmp_hit = h;
+                }
+            }
+            // 最后一个字是词库外的单字
+            if (!single && path_prob[i - 1] + log_prob_oov > tmp_prob) {
+                tmp_prob = path_prob[i - 1] + log_prob_oov;
+                tmp_hit = -1;
+            }
+            path_prob[i] = tmp_prob;
+            path_hit[i] = tmp_hit;
+        }
+
+        // 逆序生成，再恢复正序
+        for (int i = length; i > 0;) {
+            int hit = path_hit[i];
+            if (hit < 0) {
+                result.add(i - 1, 1, -1);
+                --i;
+            } else {
+                result.add(hits.start(hit), hits.length(hit), hits.word_id(hit));
+                i -= hits.length(hit);
+            }
+        }
+        result.reverse();
+        return result;
+    }
+
+    /**
+     * 把完成构建的AC自动机保存为二进制快照，快照的格式见{@code write_to}
+     * @param path 快照文件的地址
+     * @return 是否保存成功
+     */
+    public boolean save(String path) {
+        if (!change_lock) {
+            System.err.println(this + " 尚未完成buildup，无法保存快照！");
+            return false;
+        }
+        try (var out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path), 1 << 16))) {
+            write_to(out);
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * 通过内存映射加载由{@code save}保存的二进制快照，加载得到的AC自动机已经完成构建。<br/>
+     * 双数组以及各个状态数组不复制到堆上，匹配时直接读取映射的文件，多个进程加载同一个快照时共享页缓存中的同一份数据，
+     * 只有词语和词性频率会被读入堆中。因此AC自动机使用期间不能修改或者覆盖快照文件，更新快照时应该写入新的文件再替换。
+     * @param path 快照文件的地址
+     * @return 加载得到的AC自动机，如果加载失败（包括文件被截断）则为{@code null}
+     */
+    public static ACTrie load(String path) {
+        try {
+            return read_from(SnapshotIO.map(path));
+        } catch (IOException | BufferUnderflowException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * 写入二进制快照，依次为：魔数、版本、词语数量、双数组以及各个状态数组、词性表、每个词语的文本和词性频率
+     * @param stream 输出流
+     * @throws IOException 写入失败
+     */
+    void write_to(DataOutputStream stream) throws IOException {
+        stream.writeInt(SNAPSHOT_MAGIC);
+        stream.writeInt(SNAPSHOT_VERSION);
+        stream.writeInt(total_vocab);
+        SnapshotIO.write_ints(stream, base);
+        SnapshotIO.write_ints(stream, check);
+        SnapshotIO.write_ints(stream, fail);
+        SnapshotIO.write_ints(stream, out);
+        SnapshotIO.write_ints(stream, word_of);
+        SnapshotIO.write_ints(stream, depth);
+
+        // 词性表，词语中的词性以在表中的下标保存，加载时重新登记到TagSet中
+        var type_index = new int[TagSet.size()];
+        Arrays.fill(type_index, -1);
+        List<String> types = new ArrayList<>();
+        for (var word : words)
+            for (int i = 0; i < word.info.get_type_count(); ++i)
+                if (type_index[word.info.get_tag(i)] < 0) {
+                    type_index[word.info.get_tag(i)] = types.size();
+                    types.add(TagSet.name_of(word.info.get_tag(i)));
+                }
+        stream.writeInt(types.size());
+        for (var type : types)
+            SnapshotIO.write_string(stream, type);
+
+        stream.writeInt(words.length);
+        for (var word : words) {
+            SnapshotIO.write_string(stream, word.text);
+            stream.writeInt(word.info.get_type_count());
+            for (int i = 0; i < word.info.get_type_count(); ++i) {
+                stream.writeInt(type_index[word.info.get_tag(i)]);
+                stream.writeInt(word.info.get_freq(i));
+            }
+        }
+    }
+
+    /**
+     * 读取由{@code write_to}写入的二进制快照，状态数组是{@code buf}上的只读视图
+     * @param buf 快照，读取之后位置移动到快照的末尾
+     * @return 读取得到的AC自动机，如果格式不符则为{@code null}
+     * @throws BufferUnderflowException 快照被截断
+     */
+    static ACTrie read_from(ByteBuffer buf) {
+        if (!SnapshotIO.check_header(buf, SNAPSHOT_MAGIC, SNAPSHOT_VERSION, "ACTrie"))
+            return null;
+
+        var trie = new ACTrie();
+        trie.root = null;
+        trie.word_list = null;
+        trie.total_vocab = buf.getInt();
+        trie.base = SnapshotIO.view_ints(buf);
+        trie.check = SnapshotIO.view_ints(buf);
+        trie.fail = SnapshotIO.view_ints(buf);
+        trie.out = SnapshotIO.view_ints(buf);
+        trie.word_of = SnapshotIO.view_ints(buf);
+        trie.depth = SnapshotIO.view_ints(buf);
+        trie.state_count = trie.base.limit();
+
+        var types = new int[SnapshotIO.read_length(buf, Integer.BYTES)];
+        for (int i = 0; i < types.length; ++i)
+            types[i] = TagSet.intern(SnapshotIO.read_string(buf));
+
+        trie.words = new Word[SnapshotIO.read_length(buf, Integer.BYTES)];
+        for (int i = 0; i < trie.words.length; ++i) {
+            var text = SnapshotIO.read_string(buf);
+            int type_count = SnapshotIO.read_length(buf, 2 * Integer.BYTES);
+            var info = new Word_info(type_count);
+            for (int j = 0; j < type_count; ++j) {
+                int type = buf.getInt();
+                if (type < 0 || type >= types.length) {
+                    System.err.printf("ACTrie快照中第%d个词语的词性下标%d超出范围。\n", i + 1, type);
+                    return null;
+                }
+                info.add_type(types[type], buf.getInt());
+            }
+            trie.words[i] = new Word(text, info.pack());
+        }
+        if (!trie._check_snapshot())
+            return null;
+        trie.compute_log_prob();
+
+        trie.change_lock = true;
+        return trie;
+    }
+
+    /**
+     * 检查读取得到的双数组是否一致，保证损坏的快照在加载时失败，而不是在匹配时越界或者陷入死循环：<br/>
+     * 各个状态数组的长度相同；base非负并且加上任意字符都不会溢出；check、fail、out和词语编号都在范围之内；
+     * 根状态的深度为0，其他状态的深度不超过最长的词语，并且fail边和词典后缀边都指向更浅的状态；词语结尾状态的深度等于词语的长度
+     * @return 是否一致
+     */
+    private boolean _check_snapshot() {
+        int size = state_count;
+        boolean ok = size > 0 && check.limit() == size && fail.limit() == size && out.limit() == size
+                && word_of.limit() == size && depth.limit() == size && total_vocab == words.length
+                && depth.get(ROOT) == 0;
+        int max_depth = 0;
+        for (var word : words)
+            max_depth = Math.max(max_depth, word.text.length());
+        for (int s = 0; ok && s < size; ++s) {
+            int b = base.get(s), c = check.get(s), f = fail.get(s), o = out.get(s), w = word_of.get(s), d = depth.get(s);
+            ok = b >= 0 && b <= Integer.MAX_VALUE - Character.MAX_VALUE
+                    && c >= ROOT_CHECK && c < size && f >= 0 && f < size && o >= ROOT && o < size
+                    && w >= -1 && w < words.length && d >= 0 && d <= max_depth
+                    && (s == ROOT || c == FREE || (depth.get(f) < d && (o == ROOT || depth.get(o) < d)))
+                    && (w < 0 || d == words[w].text.length());
+        }
+        if (!ok)
+            System.err.println("ACTrie快照中的双数组不一致。");
+        return ok;
     }
 
     /**
@@ -0,0 +1,54 @@
+package Utils;
+
+import Dictionary.Segment;
+import Dictionary.SegmentDictionary;
+
+/**
+ * 逆向最长匹配分词器。构造时由原AC自动机生成一个逆序的AC自动机，分词时从句段的末尾向前进行最长匹配，
+ * 结果中的词语来自原AC自动机。可以被多个线程同时使用。
+ */
+public class BackwardSegmenter implements SegmentDictionary {
+    // 原AC自动机
+    private final ACTrie trie;
+    // 由原AC自动机中的词语逆序之后构成的AC自动机
+    private final ACTrie reversed;
+
+    /**
+     * @param trie 完成构建的AC自动机
+     */
+    public BackwardSegmenter(ACTrie trie) {
+        this.trie = trie;
+        this.reversed = trie.reversed();
+    }
+
+    @Override
+    public Segment segment(String text) {
+        return trie.to_segment(text, segment(text, new ACTrie.Token_buffer(text.length())));
+    }
+
+    /**
+     * 进行逆向最长匹配，结果写入{@code result}
+     * @param text 进行分词的句段
+     * @param result 用于保存结果的缓冲区，写入之前会被清空
+     * @return {@code result}
+     */
+    public ACTrie.Token_buffer segment(CharSequence text, ACTrie.Token_buffer result) {
+        return reversed.backward_segment_reversed(text, result);
+    }
+
+    /**
+     * 返回原AC自动机
+     * @return 原AC自动机
+     */
+    public ACTrie get_trie() {
+        return trie;
+    }
+
+    /**
+     * 返回逆序AC自动机
+     * @return 逆序AC自动机
+     */
+    ACTrie get_reversed() {
+        return reversed;
+    }
+}
@@ -0,0 +1,121 @@
+package Utils;
+
+import Dictionary.Segment;
+import Dictionary.SegmentDictionary;
+
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 批量分词工具，把一批句子切分为若干块，交给线程池并行地分词，结果按照输入的顺序返回。<br/>
+ * 完成构建的{@link ACTrie}在匹配时不修改自身的状态，所以所有线程可以共用同一个自动机，例如
+ * {@code new BatchSegmenter(trie::forward_segment_sentence)}。线程池可以是任意的{@link ExecutorService}，
+ * 默认为{@link ForkJoinPool#commonPool()}，在支持的JDK上也可以传入虚拟线程的线程池。
+ */
+public class BatchSegmenter {
+    // 默认每块包含的句子数量
+    private static final int DEFAULT_CHUNK_SIZE = 256;
+
+    // 分词器，必须可以被多个线程同时调用
+    private final SegmentDictionary dict;
+    // 执行分词的线程池
+    private final ExecutorService executor;
+    // 每块包含的句子数量
+    private final int chunk_size;
+
+    /**
+     * 使用公共的ForkJoinPool进行分词
+     * @param dict 分词器，必须可以被多个线程同时调用
+     */
+    public BatchSegmenter(SegmentDictionary dict) {
+        this(dict, ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param dict 分词器，必须可以被多个线程同时调用
+     * @param executor 执行分词的线程池，由调用者负责关闭
+     * @param chunk_size 每块包含的句子数量
+     */
+    public BatchSegmenter(SegmentDictionary dict, ExecutorService executor, int chunk_size) {
+        this.dict = dict;
+        this.executor = executor;
+        this.chunk_size = Math.max(chunk_size, 1);
+    }
+
+    /**
+     * 对一批句子并行地进行分词
+     * @param texts 要进行分词的句子
+     * @return 与输入顺序一致的分词结果，如果分词过程中出现异常或者被中断则为{@code null}
+     */
+    public List<Segment> segment_all(List<String> texts) {
+        var result = new Segment[texts.size()];
+        List<Future<?>> futures = new ArrayList<>(texts.size() / chunk_size + 1);
+        for (int from = 0; from < texts.size(); from += chunk_size) {
+            int chunk_from = from;
+            int chunk_to = Math.min(from + chunk_size, texts.size());
+            futures.add(executor.submit(() -> {
+                for (int i = chunk_from; i < chunk_to; ++i)
+                    result[i] = dict.segment(texts.get(i));
+            }));
+        }
+
+        try {
+            for (var future : futures)
+                future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            futures.forEach(f -> f.cancel(true));
+            return null;
+        } catch (ExecutionException e) {
+            e.getCause().printStackTrace();
+            futures.forEach(f -> f.cancel(true));
+            return null;
+        }
+        return Arrays.asList(result);
+    }
+
+    /**
+     * 对一个句子流并行地进行分词。输入流按照窗口逐段读取，每个窗口包含的句子数量为块大小乘以并行度，因此占用的内存与输入的长度无关。
+     * @param texts 要进行分词的句子流
+     * @return 与输入顺序一致的分词结果流，如果某个窗口分词失败，则在读取到该窗口时抛出{@link IllegalStateException}
+     */
+    public Stream<Segment> segment_all(Stream<String> texts) {
+        int window = chunk_size * Math.max(parallelism(), 1);
+        var source = texts.iterator();
+        var windows = new Iterator<List<Segment>>() {
+            @Override
+            public boolean hasNext() {
+                return source.hasNext();
+            }
+
+            @Override
+            public List<Segment> next() {
+                List<String> batch = new ArrayList<>(window);
+                while (batch.size() < window && source.hasNext())
+                    batch.add(source.next());
+                var result = segment_all(batch);
+                if (result == null)
+                    throw new IllegalStateException("批量分词失败");
+                return result;
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(windows, Spliterator.ORDERED), false)
+                .flatMap(List::stream)
+                .onClose(texts::close);
+    }
+
+    /**
+     * 估计线程池的并行度
+     * @return 并行度
+     */
+    private int parallelism() {
+        if (executor instanceof ForkJoinPool)
+            return ((ForkJoinPool) executor).getParallelism();
+        return Runtime.getRuntime().availableProcessors();
+    }
+}
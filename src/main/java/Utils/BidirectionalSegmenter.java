@@ -0,0 +1,90 @@
+package Utils;
+
+import Dictionary.Segment;
+import Dictionary.SegmentDictionary;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * 双向最长匹配分词器，分别进行正向最长匹配和逆向最长匹配，按照以下规则选择其中一个结果：
+ * <ol>
+ *     <li>词语数量较少的；</li>
+ *     <li>数量相同时，单字数量较少的；</li>
+ *     <li>仍然相同时，选择逆向最长匹配的结果。</li>
+ * </ol>
+ * 逆向匹配交给线程池执行，正向匹配在调用线程中同时进行。长度小于{@code PARALLEL_THRESHOLD}的句段两遍都在调用线程中完成，
+ * 因为此时任务交接的开销比匹配本身更大。可以被多个线程同时使用。
+ */
+public class BidirectionalSegmenter implements SegmentDictionary {
+    // 长度不小于这个值的句段才并行地进行两遍匹配
+    private static final int PARALLEL_THRESHOLD = 64;
+
+    // 正向匹配使用的AC自动机
+    private final ACTrie trie;
+    // 逆向最长匹配分词器
+    private final BackwardSegmenter backward;
+    // 执行逆向匹配的线程池
+    private final Executor executor;
+
+    /**
+     * 使用公共的ForkJoinPool执行逆向匹配
+     * @param trie 完成构建的AC自动机
+     */
+    public BidirectionalSegmenter(ACTrie trie) {
+        this(new BackwardSegmenter(trie), ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param backward 逆向最长匹配分词器，正向匹配使用它的原AC自动机
+     * @param executor 执行逆向匹配的线程池
+     */
+    public BidirectionalSegmenter(BackwardSegmenter backward, Executor executor) {
+        this.trie = backward.get_trie();
+        this.backward = backward;
+        this.executor = executor;
+    }
+
+    @Override
+    public Segment segment(String text) {
+        ACTrie.Token_buffer forward_tokens;
+        ACTrie.Token_buffer backward_tokens;
+        if (text.length() < PARALLEL_THRESHOLD) {
+            forward_tokens = trie.forward_segment_sentence(text, new ACTrie.Token_buffer(text.length()));
+            backward_tokens = backward.segment(text, new ACTrie.Token_buffer(text.length()));
+        } else {
+            var backward_future = CompletableFuture.supplyAsync(
+                    () -> backward.segment(text, new ACTrie.Token_buffer(text.length())), executor);
+            forward_tokens = trie.forward_segment_sentence(text, new ACTrie.Token_buffer(text.length()));
+            backward_tokens = backward_future.join();
+        }
+
+        return trie.to_segment(text, choose(forward_tokens, backward_tokens));
+    }
+
+    /**
+     * 按照词语数量和单字数量选择结果
+     * @param forward_tokens 正向最长匹配的结果
+     * @param backward_tokens 逆向最长匹配的结果
+     * @return 选中的结果
+     */
+    private static ACTrie.Token_buffer choose(ACTrie.Token_buffer forward_tokens, ACTrie.Token_buffer backward_tokens) {
+        if (forward_tokens.size() != backward_tokens.size())
+            return forward_tokens.size() < backward_tokens.size() ? forward_tokens : backward_tokens;
+        return single_count(forward_tokens) < single_count(backward_tokens) ? forward_tokens : backward_tokens;
+    }
+
+    /**
+     * 统计单字的数量
+     * @param tokens 分词结果
+     * @return 单字的数量
+     */
+    private static int single_count(ACTrie.Token_buffer tokens) {
+        int count = 0;
+        for (int i = 0; i < tokens.size(); ++i)
+            if (tokens.length(i) == 1)
+                ++count;
+        return count;
+    }
+}
@@ -0,0 +1,91 @@
+package Utils;
+
+import Dictionary.Seg_unit;
+import Dictionary.Segment;
+import Dictionary.SegmentDictionary;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 带有句子缓存的分词器，重复出现的文本直接返回缓存的分词结果，不再进行匹配和动态规划。<br/>
+ * 返回的分词结果是只读的，同一段文本的结果被所有调用者共享，命中时不分配任何对象：添加分词单元或者修改{@code get_raw}
+ * 得到的列表会抛出{@link UnsupportedOperationException}。其中的分词单元和词语同样是共享的，不能修改，
+ * 需要修改时先通过{@code copy}得到可以修改的分词结果，再拷贝需要修改的分词单元。
+ * 被包装的分词器的结果发生变化时（例如更换了词库）需要调用{@code clear}。
+ * 可以被多个线程同时使用，前提是被包装的分词器也可以。
+ */
+public class CachedSegmenter implements SegmentDictionary {
+
+    /**
+     * 只读的分词结果，构造之后不再修改
+     */
+    public static class Frozen_segment extends Segment {
+
+        Frozen_segment(Segment seg) {
+            super(0);
+            segment = Collections.unmodifiableList(Arrays.asList(seg.get_raw().toArray(new Seg_unit[0])));
+        }
+
+        @Override
+        public Segment add_segment(Seg_unit unit) {
+            throw new UnsupportedOperationException("缓存的分词结果是只读的");
+        }
+
+        @Override
+        public Segment add_segments(List<Seg_unit> units) {
+            throw new UnsupportedOperationException("缓存的分词结果是只读的");
+        }
+    }
+
+    // 被包装的分词器
+    private final SegmentDictionary dict;
+    // 分词结果的缓存
+    private final SentenceCache<Frozen_segment> cache;
+
+    /**
+     * @param dict 被包装的分词器
+     * @param capacity 缓存的容量，单位为句子
+     */
+    public CachedSegmenter(SegmentDictionary dict, int capacity) {
+        this(dict, new SentenceCache<>(capacity));
+    }
+
+    /**
+     * @param dict 被包装的分词器
+     * @param cache 分词结果的缓存
+     */
+    public CachedSegmenter(SegmentDictionary dict, SentenceCache<Frozen_segment> cache) {
+        this.dict = dict;
+        this.cache = cache;
+    }
+
+    /**
+     * 进行分词，未命中时由被包装的分词器计算并放入缓存
+     * @param text 进行分词的句段
+     * @return 只读的分词结果，被包装的分词器返回{@code null}时为{@code null}
+     */
+    @Override
+    public Segment segment(String text) {
+        return cache.get(text, key -> {
+            var res = dict.segment(key);
+            return res == null ? null : new Frozen_segment(res);
+        });
+    }
+
+    /**
+     * 清空缓存，被包装的分词器的结果发生变化之后调用
+     */
+    public void clear() {
+        cache.clear();
+    }
+
+    /**
+     * 返回分词结果的缓存，可以从中获取命中率等统计信息
+     * @return 分词结果的缓存
+     */
+    public SentenceCache<?> get_cache() {
+        return cache;
+    }
+}
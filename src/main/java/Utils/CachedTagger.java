@@ -0,0 +1,83 @@
+package Utils;
+
+import Dictionary.Segment;
+import Dictionary.TagSet;
+
+import java.util.List;
+
+/**
+ * 带有缓存的词性标注，以分词结果中的词语序列为键缓存{@link HMMTagger#tag}的结果。<br/>
+ * 每一项缓存都记录了计算时使用的模型，标注模型因为在线更新而产生新的模型之后，旧模型上的结果自动失效，不需要手动清空。
+ * 返回的词性列表是只读的，被所有调用者共享。可以被多个线程同时使用。
+ */
+public class CachedTagger {
+    // 词语之间的分隔符，不会出现在词语中
+    private static final char SEPARATOR = '\0';
+
+    /**
+     * 缓存的标注结果以及计算时使用的模型
+     */
+    private static class Tagged {
+        final HMMTagger.Model model;
+        final List<String> tags;
+
+        Tagged(HMMTagger.Model model, List<String> tags) {
+            this.model = model;
+            this.tags = tags;
+        }
+    }
+
+    // 词性标注模型
+    private final HMMTagger tagger;
+    // 标注结果的缓存
+    private final SentenceCache<Tagged> cache;
+
+    /**
+     * @param tagger 词性标注模型
+     * @param capacity 缓存的容量，单位为句子
+     */
+    public CachedTagger(HMMTagger tagger, int capacity) {
+        this.tagger = tagger;
+        this.cache = new SentenceCache<>(capacity);
+    }
+
+    /**
+     * 使用Viterbi算法对这个分词结果进行词性标注，相同的词语序列直接返回缓存的结果
+     * @param seg 进行词性标注的分词
+     * @return 只读的词性列表，模型尚未准备完成时为{@code null}
+     */
+    public List<String> tag(final Segment seg) {
+        var model = tagger.model();
+        if (model == null) {
+            System.err.println(tagger + "尚未准备完成，无法进行标注。");
+            return null;
+        }
+
+        var key = new StringBuilder();
+        for (int i = 0; i < seg.length(); ++i) {
+            if (i > 0)
+                key.append(SEPARATOR);
+            key.append(seg.get_which(i).word.text);
+        }
+
+        var res = cache.get(key.toString(), text -> {
+            var word_ids = new int[seg.length()];
+            for (int i = 0; i < word_ids.length; ++i)
+                word_ids[i] = model.words.id_of(seg.get_which(i).word.text);
+            var tag_ids = tagger.tag_word_ids(model, word_ids, word_ids.length);
+            var tags = new String[tag_ids.length];
+            for (int i = 0; i < tags.length; ++i)
+                tags[i] = TagSet.name_of(tag_ids[i]);
+            return new Tagged(model, List.of(tags));
+        }, cached -> cached.model == model);
+        return res.tags;
+    }
+
+    /**
+     * 返回标注结果的缓存，可以从中获取命中率等统计信息
+     * @return 标注结果的缓存
+     */
+    public SentenceCache<?> get_cache() {
+        return cache;
+    }
+}
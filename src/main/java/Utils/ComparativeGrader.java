@@ -0,0 +1,234 @@
+package Utils;
+
+import Dictionary.SegmentDictionary;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * 在同一份答案上比较多个分词器的工具类，例如不同的分词方式或者不同版本的词库。<br/>
+ * 答案文件在构造时通过内存映射并行解析一次，之后每次比较都复用解析得到的句子，不再读取文件。
+ * 比较时各个分词器在调用线程中一个接一个地处理所有句子，互不争抢处理器和内存带宽，记录每个句子的分词耗时，
+ * 以及线程在分词过程中分配的字节数，最后得到每个分词器的指标、耗时的分位数和每个句子平均分配的字节数。
+ * 分配的字节数只统计调用分词器的线程，分词器内部交给其他线程的工作不计入。
+ */
+public class ComparativeGrader {
+    // 耗时的分位数
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99};
+
+    /**
+     * 一个分词器的比较结果
+     */
+    public static class Entry {
+        // 分词器的名字
+        final public String name;
+        // 分词指标，以及按照分词耗时之和计算的每秒处理的句子数量和字符数量
+        final public SegmentGrader.Result result;
+        // 每个句子分词耗时的50%、90%、99%分位数以及最大值，单位为纳秒
+        final public long p50_nanos;
+        final public long p90_nanos;
+        final public long p99_nanos;
+        final public long max_nanos;
+        // 每个句子平均分配的字节数，JVM不支持统计时为-1
+        final public double bytes_per_sentence;
+
+        public Entry(String name, SegmentGrader.Result result, long p50_nanos, long p90_nanos, long p99_nanos,
+                     long max_nanos, double bytes_per_sentence) {
+            this.name = name;
+            this.result = result;
+            this.p50_nanos = p50_nanos;
+            this.p90_nanos = p90_nanos;
+            this.p99_nanos = p99_nanos;
+            this.max_nanos = max_nanos;
+            this.bytes_per_sentence = bytes_per_sentence;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: [%s], p50: %.1fus, p90: %.1fus, p99: %.1fus, max: %.1fus, %.0f B/sentence",
+                    name, result, p50_nanos / 1e3, p90_nanos / 1e3, p99_nanos / 1e3, max_nanos / 1e3,
+                    bytes_per_sentence);
+        }
+    }
+
+    /**
+     * 答案中的一个句子
+     */
+    private static class Sentence {
+        // 去掉空白之后的句子
+        final String text;
+        // 答案中每个词语在句子中的终点
+        final int[] gold_ends;
+
+        Sentence(String text, int[] gold_ends) {
+            this.text = text;
+            this.gold_ends = gold_ends;
+        }
+    }
+
+    // 答案中的句子
+    private final Sentence[] sentences;
+    // 答案中的词语总数
+    private final long gold_count;
+    // 字符总数
+    private final long char_count;
+
+    /**
+     * 读取不带词性标注的答案文件
+     * @param path 答案文件的地址
+     */
+    public ComparativeGrader(String path) {
+        this(path, false);
+    }
+
+    /**
+     * 读取答案文件，带有词性标注时只使用其中的分词。读取失败时答案为空，之后的比较返回{@code null}
+     * @param path 答案文件的地址
+     * @param annotated 答案是否带有词性标注
+     */
+    public ComparativeGrader(String path, boolean annotated) {
+        List<Sentence> res = new ArrayList<>();
+        try (var channel = FileChannel.open(Path.of(path), StandardOpenOption.READ)) {
+            var bounds = LineShards.bounds(channel, Runtime.getRuntime().availableProcessors());
+            var chunks = IntStream.range(0, bounds.length - 1).parallel()
+                    .mapToObj(i -> {
+                        var parser = new SegmentGrader.Gold_parser(annotated);
+                        List<Sentence> chunk = new ArrayList<>();
+                        try {
+                            LineShards.for_each_line(channel, bounds[i], bounds[i + 1], line -> {
+                                if (parser.parse(line))
+                                    chunk.add(new Sentence(parser.text, Arrays.copyOf(parser.ends, parser.count)));
+                            });
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                        return chunk;
+                    })
+                    .collect(Collectors.toList());
+            chunks.forEach(res::addAll);
+        } catch (IOException | UncheckedIOException e) {
+            e.printStackTrace();
+            res.clear();
+        }
+
+        sentences = res.toArray(new Sentence[0]);
+        gold_count = res.stream().mapToLong(sentence -> sentence.gold_ends.length).sum();
+        char_count = res.stream().mapToLong(sentence -> sentence.text.length()).sum();
+    }
+
+    /**
+     * 比较多个分词器，按照迭代的顺序依次进行
+     * @param segmenters 分词器的名字和分词器，结果按照迭代的顺序排列
+     * @return 每个分词器的比较结果，如果答案为空或者分词过程中出现异常则为{@code null}
+     */
+    public List<Entry> compare(Map<String, SegmentDictionary> segmenters) {
+        return compare(segmenters, 0);
+    }
+
+    /**
+     * 比较多个分词器，按照迭代的顺序依次进行，每个分词器先预热再计时，计时期间没有其他分词器在运行
+     * @param segmenters 分词器的名字和分词器，结果按照迭代的顺序排列
+     * @param warmup_passes 正式计时之前在所有句子上预热的遍数，使得比较的是JIT编译之后的性能
+     * @return 每个分词器的比较结果，如果答案为空或者分词过程中出现异常则为{@code null}
+     */
+    public List<Entry> compare(Map<String, SegmentDictionary> segmenters, int warmup_passes) {
+        if (sentences.length == 0) {
+            System.err.println("ComparativeGrader未加载答案文件或者答案为空。");
+            return null;
+        }
+        List<Entry> res = new ArrayList<>(segmenters.size());
+        for (var segmenter : segmenters.entrySet()) {
+            try {
+                res.add(run(segmenter.getKey(), segmenter.getValue(), warmup_passes));
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                return null;
+            }
+        }
+        return res;
+    }
+
+    /**
+     * 在当前线程中使用一个分词器处理所有句子
+     * @param name 分词器的名字
+     * @param dict 分词器
+     * @param warmup_passes 预热的遍数
+     * @return 比较结果
+     */
+    private Entry run(String name, SegmentDictionary dict, int warmup_passes) {
+        for (int pass = 0; pass < warmup_passes; ++pass)
+            for (var sentence : sentences)
+                dict.segment(sentence.text);
+
+        var latency = new long[sentences.length];
+        long test_count = 0, correct = 0;
+        long elapsed = 0, allocated = 0;
+        var bean = ManagementFactory.getThreadMXBean();
+        var sun_bean = bean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemoryEnabled()
+                ? (com.sun.management.ThreadMXBean) bean : null;
+        for (int i = 0; i < sentences.length; ++i) {
+            var sentence = sentences[i];
+            long bytes = sun_bean != null ? sun_bean.getCurrentThreadAllocatedBytes() : 0;
+            long start = System.nanoTime();
+            var test_sep = dict.segment(sentence.text).get_raw();
+            latency[i] = System.nanoTime() - start;
+            if (sun_bean != null)
+                allocated += sun_bean.getCurrentThreadAllocatedBytes() - bytes;
+            elapsed += latency[i];
+
+            test_count += test_sep.size();
+            correct += SegmentGrader.count_correct(sentence.text, sentence.gold_ends, sentence.gold_ends.length,
+                    test_sep);
+        }
+
+        var counts = new SegmentGrader.Counts();
+        counts.gold = gold_count;
+        counts.test = test_count;
+        counts.correct = correct;
+        counts.sentences = sentences.length;
+        counts.characters = char_count;
+
+        Arrays.sort(latency);
+        var quantiles = new long[PERCENTILES.length];
+        for (int i = 0; i < PERCENTILES.length; ++i)
+            quantiles[i] = latency.length == 0 ? 0 : latency[(int) (PERCENTILES[i] * (latency.length - 1))];
+        return new Entry(name, counts.to_result(elapsed), quantiles[0], quantiles[1], quantiles[2],
+                latency.length == 0 ? 0 : latency[latency.length - 1],
+                sun_bean == null ? -1 : allocated / (double) Math.max(sentences.length, 1));
+    }
+
+    /**
+     * 把比较结果输出为并排的表格
+     * @param entries 比较结果
+     * @return 表格
+     */
+    public static String table(List<Entry> entries) {
+        var builder = new StringBuilder(String.format("%-16s%8s%8s%8s%12s%12s%12s%12s%14s%14s\n",
+                "name", "p", "r", "f1", "p50(us)", "p90(us)", "p99(us)", "max(us)", "B/sentence", "sentences/s"));
+        for (var entry : entries)
+            builder.append(String.format("%-16s%8.3f%8.3f%8.3f%12.1f%12.1f%12.1f%12.1f%14.0f%14.1f\n",
+                    entry.name, entry.result.precision, entry.result.recall, entry.result.f1,
+                    entry.p50_nanos / 1e3, entry.p90_nanos / 1e3, entry.p99_nanos / 1e3, entry.max_nanos / 1e3,
+                    entry.bytes_per_sentence, entry.result.sentences_per_second));
+        return builder.toString();
+    }
+
+    /**
+     * 返回答案中的句子数量
+     * @return 句子数量
+     */
+    public int sentence_count() {
+        return sentences.length;
+    }
+}
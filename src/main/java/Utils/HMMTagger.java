@@ -1,77 +1,605 @@
 package Utils;
 
+import Dictionary.TagSet;
 import Dictionary.Word;
 import Dictionary.Word_info;
 import Dictionary.Segment;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
-import java.util.regex.Pattern;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.stream.IntStream;
 import java.util.stream.Collectors;
 
 /**
- * 隐式马尔科夫词性标注模型，对于没有标注的词语默认其词性为w。UTF8编码。
+ * 隐式马尔科夫词性标注模型，对于没有标注的词语默认其词性为w。UTF8编码。<br/>
+ * 训练完成的模型可以通过{@code save}保存为二进制模型文件，之后通过{@code load}直接恢复，不需要重新读取语料库。
  * @author mine268
  * @version 1.0
  */
 public class HMMTagger {
 
-    // 指示模型是否准备完成，准备完成之后不可以继续增加语料（因为ACTrie是这么弄的）
-    private boolean prepared;
-    // 词库，使用了ACTrie模型
+    // 指示模型是否准备完成，准备完成之后添加的语料通过在线更新进入模型。标注线程不持有锁读取，因此是volatile的
+    private volatile boolean prepared;
+    // 准备完成之前用于构建的词库，使用了ACTrie模型，准备完成之后作为在线更新的词库的初始基础自动机
     private final ACTrie dictionary;
+    // 以下统计均以词性在TagSet中的编号为下标，随着新词性的出现而扩展
     // 词性统计，统计每一种词性出现在字典中的词的数量
-    private final Map<String, Integer> part_sum;
+    private int[] part_sum;
     // 统计每一种词性转移出去的词频的数量
-    private final Map<String, Integer> part_trans_sum_freq;
-    // 词性转移统计
-    private final Map<String, Map<String, Integer>> part_trans;
-    // 每一个词性拥有的词语的种类数量的统计
-    private final Map<String, Integer> part_word_count;
-    // 匹配未标记的符号
-    private static final Pattern regex_comm = Pattern.compile("[：。？！“”【】‘’、，；（）:.?!\"',;()-]|…{2}");
-    // 匹配多余的连续空格
-    private static final Pattern regex_space = Pattern.compile("\\s{2,}");
+    private int[] part_trans_sum_freq;
+    // 词性转移统计，part_trans[former][latter]
+    private int[][] part_trans;
+    // 每一个词性拥有的词语的种类数量的统计，每次编译模型时由词库统计得到
+    private int[] part_word_count;
+    // 以下为模型准备完成之后的数据
+    // 用于在线更新的分层词库
+    private IncrementalDictionary online_dictionary;
+    // 当前编译得到的模型，每次在线更新或者合并词库之后整体替换
+    private volatile Model model;
+    // 是否在编译模型时预先计算所有词语的发射概率，否则在标注时按需计算
+    private volatile boolean precompute_emissions = false;
+    // 在线更新、合并词库以及编译模型时持有的锁
+    private final Object update_lock = new Object();
+    // 基础自动机中每一种词性拥有的词语的种类数量，基础自动机被替换时重新统计
+    private int[] base_word_count;
+    // base_word_count 统计的基础自动机
+    private ACTrie counted_base;
+    // 在线更新时解析得到的词语，每一批语料解析完成之后加入词库
+    private List<Word> online_words = new ArrayList<>();
 
     // 用于浮点比较的常数
     private static final float epsilon = 1e-4f;
     // 概率线性插值参数
     private static final float lambda = 0.8f;
+    // 模型文件的魔数，即"HMMT"
+    private static final int MODEL_MAGIC = 0x484d4d54;
+    // 模型文件的版本
+    private static final int MODEL_VERSION = 3;
+
+    // 逐行添加语料时，解析结果直接写入模型的统计
+    private final Corpus_sink direct_sink = new Corpus_sink() {
+        @Override
+        public void word(String text, String tag) {
+            int id = TagSet.intern(tag);
+            dictionary.add_word(new Word(text, new Word_info(1).add_type(id, 1)));
+            // 进行词性的统计
+            _increase_part(id);
+        }
+
+        @Override
+        public void trans(String former, String latter) {
+            _increase_trans(TagSet.intern(former), TagSet.intern(latter));
+        }
+    };
+    // 逐行添加语料时使用的解析器
+    private final Corpus_parser direct_parser = new Corpus_parser(direct_sink);
+    // 在线更新时，解析结果写入统计，词语先收集起来再加入词库
+    private final Corpus_sink online_sink = new Corpus_sink() {
+        @Override
+        public void word(String text, String tag) {
+            int id = TagSet.intern(tag);
+            online_words.add(new Word(text, new Word_info(1).add_type(id, 1)));
+            _increase_part(id);
+        }
+
+        @Override
+        public void trans(String former, String latter) {
+            _increase_trans(TagSet.intern(former), TagSet.intern(latter));
+        }
+    };
+    // 在线更新时使用的解析器
+    private final Corpus_parser online_parser = new Corpus_parser(online_sink);
+
+    /**
+     * 编译得到的模型，不可修改。一次标注只使用同一个模型，因此在线更新不会影响正在进行的标注
+     */
+    static class Model {
+        // 模型使用的词库视图，词语编号以该视图为准
+        final IncrementalDictionary.Snapshot words;
+        // 模型中的词性的编号，词性在Viterbi中以在该列表中的下标表示
+        final int[] tag_list;
+        // log_trans[k][j] 为从词性 k 转移到词性 j 的对数概率
+        final float[][] log_trans;
+        // 未登录词在每种词性下的对数发射概率
+        final float[] log_emission_oov;
+        // 每种词性拥有的词语的种类数量，以词性在tag_list中的下标为下标
+        final int[] word_count;
+        // 以词语编号为下标，缓存每个词语在每种词性下的对数发射概率，按需计算或者通过precompute_emissions一次算完
+        final AtomicReferenceArray<float[]> log_emission_cache;
+        // 以TagSet中的编号为下标，词性在tag_list中的下标，不在模型中的词性为-1
+        private final int[] tag_position;
+
+        Model(IncrementalDictionary.Snapshot words, int[] tag_list, float[][] log_trans, int[] word_count) {
+            this.words = words;
+            this.tag_list = tag_list;
+            this.log_trans = log_trans;
+            this.word_count = word_count;
+            tag_position = new int[tag_list.length == 0 ? 0 : tag_list[tag_list.length - 1] + 1];
+            Arrays.fill(tag_position, -1);
+            for (int k = 0; k < tag_list.length; ++k)
+                tag_position[tag_list[k]] = k;
+            log_emission_oov = new float[tag_list.length];
+            for (int k = 0; k < tag_list.length; ++k)
+                log_emission_oov[k] = (float) Math.log(characteristic_collapse_probability(k, null));
+            log_emission_cache = new AtomicReferenceArray<>(words.id_bound());
+        }
+
+        /**
+         * 获取词语在每种词性下的对数发射概率，词库中的词语按照编号缓存，未登录词共用同一组概率。返回的数组不可修改。
+         * @param word_id 词语在词库视图中的编号，-1表示未登录词
+         * @return 以词性下标为下标的对数发射概率
+         */
+        float[] log_emission_of(int word_id) {
+            if (word_id < 0)
+                return log_emission_oov;
+
+            var emission = log_emission_cache.get(word_id);
+            if (emission == null) {
+                emission = compute_emission(words.get_word(word_id));
+                log_emission_cache.set(word_id, emission);
+            }
+            return emission;
+        }
+
+        /**
+         * 并行地计算词库中所有词语的对数发射概率，之后的标注不再需要按需计算
+         */
+        void precompute_emissions() {
+            IntStream.range(0, log_emission_cache.length()).parallel().forEach(id -> {
+                if (log_emission_cache.get(id) == null)
+                    log_emission_cache.set(id, compute_emission(words.get_word(id)));
+            });
+        }
+
+        /**
+         * 计算一个词语在每种词性下的对数发射概率。词语没有的词性的频率为0，概率只与词性有关，
+         * 所以先按照频率为0填充，再覆盖词语拥有的词性，只需要遍历一次词语的词性
+         * @param word 词库中的词语
+         * @return 以词性下标为下标的对数发射概率
+         */
+        private float[] compute_emission(final Word word) {
+            var info = word.info;
+            int total = info.get_type_sum_by_freq();
+            var emission = new float[tag_list.length];
+            for (int k = 0; k < tag_list.length; ++k)
+                emission[k] = (float) Math.log(smoothed_probability(k, 0, total));
+            for (int i = 0; i < info.get_type_count(); ++i) {
+                int tag = info.get_tag(i);
+                int k = tag < tag_position.length ? tag_position[tag] : -1;
+                if (k >= 0)
+                    emission[k] = (float) Math.log(smoothed_probability(k, info.get_freq(i), total));
+            }
+            return emission;
+        }
+
+        /**
+         * 获取当前词性表现为特定词语的概率，这个概率使用了+1法进行平滑
+         * @param k 词性在tag_list中的下标
+         * @param w_info 词库中的词语，未登录词为{@code null}
+         * @return 返回概率
+         */
+        private float characteristic_collapse_probability(final int k, final Word w_info) {
+            int w_freq = (w_info == null ? 0 : w_info.info.get_freq_of_type(tag_list[k]));
+            int total = (w_info == null ? 1 : w_info.info.get_type_sum_by_freq());
+
+            return smoothed_probability(k, w_freq, total);
+        }
+
+        /**
+         * 使用+1法平滑的发射概率
+         * @param k 词性在tag_list中的下标
+         * @param w_freq 词语作为这种词性出现的频率
+         * @param total 词语的频率和
+         * @return 返回概率
+         */
+        private float smoothed_probability(final int k, final int w_freq, final int total) {
+            return ((float) (w_freq + 1)) / (total + word_count[k]);
+        }
+    }
+
+    /**
+     * 语料解析结果的接收者
+     */
+    interface Corpus_sink {
+        /**
+         * 解析得到一个词语
+         * @param text 词语
+         * @param tag 词性
+         */
+        void word(String text, String tag);
+
+        /**
+         * 解析得到一次词性转移
+         * @param former 前一个词语的词性
+         * @param latter 后一个词语的词性
+         */
+        void trans(String former, String latter);
+    }
+
+    /**
+     * 语料行的解析器，对每一行只扫描一遍。语料行由空白分隔的词语组成，支持以下几种词语：
+     * <ul>
+     *     <li>{@code 词语/词性}，以最后一个{@code /}分隔词语和词性；</li>
+     *     <li>{@code [词语/词性 词语/词性 ...]/词性}，嵌套标注的词语，先给出其中的每个词语，再给出合并之后的词语；</li>
+     *     <li>没有标注的标点符号，其后不是{@code /}，从当前词语的开头到标点符号为止的部分作为一个词性为{@code w}的词语。</li>
+     * </ul>
+     * 词性转移只在顶层的词语之间统计。词性在解析器内部按照字符范围查表，已经出现过的词性不会再生成新的字符串。<br/>
+     * 解析失败时抛出{@link IllegalArgumentException}，此前已经给出的解析结果不会撤回。一个解析器只能在一个线程中使用。
+     */
+    static class Corpus_parser {
+        // 没有标注的标点符号的词性
+        private static final String PUNCTUATION_TAG = "w";
+
+        // 接收解析结果
+        private final Corpus_sink sink;
+        // 已经出现过的词性，开放寻址的哈希表
+        private String[] tag_table = new String[64];
+        // 哈希表中词性的数量
+        private int tag_count = 0;
+        // 用于拼接嵌套标注的词语
+        private final StringBuilder merge_text = new StringBuilder();
+        // 正在解析的语料行
+        private String line;
+        // 语料行去掉末尾空白之后的结尾
+        private int end;
+        // 最近解析的一个词语的词性
+        private String token_tag;
+
+        Corpus_parser(Corpus_sink sink) {
+            this.sink = sink;
+            insert(tag_table, PUNCTUATION_TAG);
+            tag_count = 1;
+        }
+
+        /**
+         * 解析一条语料
+         * @param line 语料行
+         */
+        void parse(String line) {
+            this.line = line;
+            int pos = 0;
+            end = line.length();
+            while (pos < end && line.charAt(pos) <= ' ')
+                ++pos;
+            while (end > pos && line.charAt(end - 1) <= ' ')
+                --end;
+
+            String former_tag = null;
+            while (pos < end) {
+                if (line.charAt(pos) == '[' && pos + 1 < end && line.charAt(pos + 1) != '/')
+                    pos = compound(pos);
+                else
+                    pos = token(pos, end, false);
+                if (former_tag != null)
+                    sink.trans(former_tag, token_tag);
+                former_tag = token_tag;
+                pos = skip_space(pos, end);
+            }
+            this.line = null;
+        }
+
+        /**
+         * 解析一个普通的词语或者没有标注的标点符号
+         * @param start 词语的开头
+         * @param limit 不能超过的位置
+         * @param inner 是否在嵌套标注中，嵌套标注中的词语还要拼接到{@code merge_text}中
+         * @return 词语结束的位置
+         */
+        private int token(int start, int limit, boolean inner) {
+            int slash = -1;
+            int first_slash = -1;
+            for (int i = start; ; ) {
+                if (i == limit || is_separator(i, limit)) {
+                    if (slash < 0)
+                        throw new IllegalArgumentException("词语缺少词性：" + line.substring(start, i));
+                    token_tag = tag_of(slash + 1, i);
+                    emit(start, slash, first_slash, inner);
+                    return i;
+                }
+                char c = line.charAt(i);
+                if (c == '/') {
+                    slash = i;
+                    if (first_slash < 0)
+                        first_slash = i;
+                    ++i;
+                    continue;
+                }
+                int len = punctuation_length(i, limit);
+                if (len > 0 && (i + len == limit || line.charAt(i + len) != '/')) {
+                    token_tag = PUNCTUATION_TAG;
+                    emit(start, i + len, first_slash, inner);
+                    return i + len;
+                }
+                i += len > 0 ? len : 1;
+            }
+        }
+
+        /**
+         * 解析一个嵌套标注的词语
+         * @param start 左方括号的位置
+         * @return 词语结束的位置
+         */
+        private int compound(int start) {
+            int close = line.indexOf(']', start + 1);
+            if (close < 0 || close + 1 >= end || line.charAt(close + 1) != '/')
+                throw new IllegalArgumentException("嵌套标注不完整：" + line.substring(start, end));
+
+            merge_text.setLength(0);
+            for (int i = skip_space(start + 1, close); i < close; i = skip_space(i, close)) {
+                if (line.charAt(i) == '[' && i + 1 < close && line.charAt(i + 1) != '/')
+                    throw new IllegalArgumentException("不支持多层嵌套标注：" + line.substring(start, end));
+                i = token(i, close, true);
+            }
+
+            int tag_end = close + 2;
+            while (tag_end < end && !is_separator(tag_end, end))
+                ++tag_end;
+            token_tag = tag_of(close + 2, tag_end);
+            sink.word(merge_text.toString(), token_tag);
+            return tag_end;
+        }
+
+        /**
+         * 给出一个词语，词性为{@code token_tag}
+         * @param start 词语的开头
+         * @param text_end 词语的结尾
+         * @param first_slash 词语开头之后的第一个{@code /}，没有则为-1
+         * @param inner 是否在嵌套标注中
+         */
+        private void emit(int start, int text_end, int first_slash, boolean inner) {
+            if (inner)
+                merge_text.append(line, start, first_slash >= 0 ? first_slash : text_end);
+            sink.word(line.substring(start, text_end), token_tag);
+        }
+
+        /**
+         * 判断位置{@code i}处是否为词语之间的分隔，空格或者连续的多个空白字符都是分隔
+         * @param i 位置
+         * @param limit 不能超过的位置
+         * @return 是否为分隔
+         */
+        private boolean is_separator(int i, int limit) {
+            char c = line.charAt(i);
+            return c == ' ' || (is_space(c) && i + 1 < limit && is_space(line.charAt(i + 1)));
+        }
+
+        /**
+         * 跳过空白字符
+         * @param i 开始的位置
+         * @param limit 不能超过的位置
+         * @return 第一个不是空白字符的位置
+         */
+        private int skip_space(int i, int limit) {
+            while (i < limit && is_space(line.charAt(i)))
+                ++i;
+            return i;
+        }
+
+        private static boolean is_space(char c) {
+            return c == ' ' || c == '\t' || c == '\n' || c == '\u000b' || c == '\f' || c == '\r';
+        }
+
+        /**
+         * 判断位置{@code i}处是否为标点符号
+         * @param i 位置
+         * @param limit 不能超过的位置
+         * @return 标点符号的长度，不是标点符号则为0
+         */
+        private int punctuation_length(int i, int limit) {
+            switch (line.charAt(i)) {
+                case '：': case '。': case '？': case '！': case '“': case '”': case '【': case '】':
+                case '‘': case '’': case '、': case '，': case '；': case '（': case '）':
+                case ':': case '.': case '?': case '!': case '"': case '\'': case ',': case ';':
+                case '(': case ')': case '-':
+                    return 1;
+                case '…':
+                    return i + 1 < limit && line.charAt(i + 1) == '…' ? 2 : 0;
+                default:
+                    return 0;
+            }
+        }
+
+        /**
+         * 获取[from, to)范围内的词性，已经出现过的词性直接返回之前的字符串
+         * @param from 词性的开头
+         * @param to 词性的结尾
+         * @return 词性
+         */
+        private String tag_of(int from, int to) {
+            int hash = 0;
+            for (int i = from; i < to; ++i)
+                hash = 31 * hash + line.charAt(i);
+            int mask = tag_table.length - 1;
+            int len = to - from;
+            for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+                var tag = tag_table[slot];
+                if (tag == null)
+                    break;
+                if (tag.hashCode() == hash && tag.length() == len && line.regionMatches(from, tag, 0, len))
+                    return tag;
+            }
+            var tag = line.substring(from, to);
+            if (++tag_count * 2 > tag_table.length)
+                tag_table = rehash(tag_table.length * 2);
+            insert(tag_table, tag);
+            return tag;
+        }
+
+        /**
+         * 把词性表扩展为{@code size}的大小
+         * @param size 新的大小，必须为2的幂
+         * @return 新的词性表
+         */
+        private String[] rehash(int size) {
+            var table = new String[size];
+            for (var tag : tag_table)
+                if (tag != null)
+                    insert(table, tag);
+            return table;
+        }
+
+        private static void insert(String[] table, String tag) {
+            int mask = table.length - 1;
+            int slot = tag.hashCode() & mask;
+            while (table[slot] != null)
+                slot = (slot + 1) & mask;
+            table[slot] = tag;
+        }
+    }
+
+    /**
+     * 语料库的一个分片的统计表，并行加载时每个分片由一个线程独立解析。<br/>
+     * 词性使用分片内按照首次出现的顺序编号的局部编号，词语也按照首次出现的顺序记录，
+     * 因此按照分片的顺序合并之后，词性的登记顺序和词语的添加顺序都与逐行加载一致。
+     */
+    private static class Corpus_shard implements Corpus_sink {
+        // 局部编号对应的词性
+        final List<String> tags = new ArrayList<>();
+        // 词性对应的局部编号
+        final Map<String, Integer> tag_index = new HashMap<>();
+        // 以下统计以局部编号为下标
+        int[] part_sum = new int[16];
+        int[] part_trans_sum_freq = new int[16];
+        int[][] part_trans = new int[16][16];
+        // 分片中的词语，按照首次出现的顺序，其中的词性为局部编号
+        final Map<String, Word_info> words = new LinkedHashMap<>();
+        // 分片中的行数
+        int line_count = 0;
+        // 解析失败的行在分片中的行号以及内容
+        final List<Integer> failed_lines = new ArrayList<>();
+        final List<String> failed_text = new ArrayList<>();
+        // 分片使用的解析器
+        private final Corpus_parser parser = new Corpus_parser(this);
+
+        /**
+         * 解析语料库文件中[from, to)范围内的所有行，范围的两端都必须是行的开头或者文件末尾
+         * @param channel 语料库文件
+         * @param from 起始的字节位置
+         * @param to 结束的字节位置
+         * @return this
+         * @throws IOException 读取失败
+         */
+        Corpus_shard parse(FileChannel channel, long from, long to) throws IOException {
+            LineShards.for_each_line(channel, from, to, this::parse_line);
+            return this;
+        }
+
+        /**
+         * 解析一行语料，解析失败的行会被记录下来，已经解析的部分仍然计入统计，与逐行加载相同
+         * @param line 语料行
+         */
+        void parse_line(String line) {
+            try {
+                parser.parse(line);
+            } catch (Exception e) {
+                failed_lines.add(line_count);
+                failed_text.add(line.substring(0, Math.min(50, line.length())));
+            }
+            ++line_count;
+        }
+
+        @Override
+        public void word(String text, String tag) {
+            int t = local_tag(tag);
+            words.computeIfAbsent(text, k -> new Word_info(1)).add_type(t, 1);
+            ++part_sum[t];
+        }
+
+        @Override
+        public void trans(String former, String latter) {
+            int f = local_tag(former);
+            int l = local_tag(latter);
+            ++part_trans_sum_freq[f];
+            ++part_trans[f][l];
+        }
+
+        /**
+         * 获取词性的局部编号，新的词性会被分配新的编号
+         * @param tag 词性
+         * @return 局部编号
+         */
+        private int local_tag(String tag) {
+            var t = tag_index.get(tag);
+            if (t != null)
+                return t;
+            int id = tags.size();
+            tags.add(tag);
+            tag_index.put(tag, id);
+            if (id == part_sum.length) {
+                int new_size = id << 1;
+                part_sum = Arrays.copyOf(part_sum, new_size);
+                part_trans_sum_freq = Arrays.copyOf(part_trans_sum_freq, new_size);
+                var new_trans = new int[new_size][];
+                for (int i = 0; i < new_size; ++i)
+                    new_trans[i] = i < part_trans.length ? Arrays.copyOf(part_trans[i], new_size) : new int[new_size];
+                part_trans = new_trans;
+            }
+            return id;
+        }
+    }
 
     public HMMTagger() {
         prepared = false;
         dictionary = new ACTrie();
-        part_sum = new HashMap<>();
-        part_trans_sum_freq = new HashMap<>();
-        part_trans = new HashMap<>();
-        part_word_count = new HashMap<>();
+        _init_counts(0);
+    }
+
+    /**
+     * 使用已经完成构建的词库构造一个准备完成的模型，用于从模型文件恢复
+     * @param dict 已经完成构建的词库
+     */
+    private HMMTagger(ACTrie dict) {
+        prepared = true;
+        dictionary = dict;
+        _init_counts(TagSet.size());
     }
 
     /**
-     * 构造时加载语料库，语料库的编码类型为UTF8。
+     * 构造时使用与处理器数量相同的线程并行加载语料库，语料库的编码类型为UTF8。
      * @param corpus_path 语料库地址
      */
     public HMMTagger(String corpus_path) {
+        this(corpus_path, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * 构造时并行加载语料库，语料库的编码类型为UTF8。<br/>
+     * 语料库按照字节范围切分为{@code shard_count}个分片，分片的边界对齐到行的开头。每个分片在各自的统计表中完成解析，
+     * 最后按照分片的顺序合并到模型中，因此得到的模型与逐行加载得到的模型完全相同。
+     * @param corpus_path 语料库地址
+     * @param shard_count 分片的数量
+     */
+    public HMMTagger(String corpus_path, int shard_count) {
         prepared = false;
         dictionary = new ACTrie();
-        part_sum = new HashMap<>();
-        part_trans_sum_freq = new HashMap<>();
-        part_trans = new HashMap<>();
-        part_word_count = new HashMap<>();
+        _init_counts(0);
 
-        try {
-            FileReader file = new FileReader(corpus_path);
-            BufferedReader buf = new BufferedReader(file);
-            int line_count = 0;
-            while (buf.ready()) {
-                var line = buf.readLine();
-                try {
-                    insert_line(line);
-                    ++line_count;
-                } catch (Exception e) {
-                    System.out.printf("第%d行语料解析失败，内容：%s...\n", line_count, line.substring(0, 50));
-                }
+        try (var channel = FileChannel.open(Path.of(corpus_path), StandardOpenOption.READ)) {
+            var bounds = LineShards.bounds(channel, shard_count);
+            var shards = IntStream.range(0, bounds.length - 1).parallel()
+                    .mapToObj(i -> {
+                        try {
+                            return new Corpus_shard().parse(channel, bounds[i], bounds[i + 1]);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    })
+                    .collect(Collectors.toList());
+            int line_offset = 0;
+            for (var shard : shards) {
+                _merge_shard(shard, line_offset);
+                line_offset += shard.line_count;
             }
         } catch (Exception e) {
             e.printStackTrace();
@@ -80,35 +608,118 @@ public class HMMTagger {
     }
 
     /**
-     * 进行dictionary的buildup，完成之后不能再继续添加语料库。
+     * 把一个分片的统计合并到模型中。分片中的词性按照局部编号的顺序登记到{@link TagSet}中，词语按照首次出现的顺序添加到词库中
+     * @param shard 分片
+     * @param line_offset 分片之前的行数
+     */
+    private void _merge_shard(Corpus_shard shard, int line_offset) {
+        var global = new int[shard.tags.size()];
+        for (int i = 0; i < global.length; ++i)
+            global[i] = TagSet.intern(shard.tags.get(i));
+        _ensure_tag_capacity(TagSet.size());
+
+        for (int i = 0; i < global.length; ++i) {
+            part_sum[global[i]] += shard.part_sum[i];
+            part_trans_sum_freq[global[i]] += shard.part_trans_sum_freq[i];
+            for (int j = 0; j < global.length; ++j)
+                part_trans[global[i]][global[j]] += shard.part_trans[i][j];
+        }
+
+        for (var entry : shard.words.entrySet()) {
+            var local = entry.getValue();
+            var info = new Word_info(local.get_type_count());
+            for (int i = 0; i < local.get_type_count(); ++i)
+                info.add_type(global[local.get_tag(i)], local.get_freq(i));
+            dictionary.add_word(new Word(entry.getKey(), info));
+        }
+
+        for (int i = 0; i < shard.failed_lines.size(); ++i)
+            System.out.printf("第%d行语料解析失败，内容：%s...\n",
+                    line_offset + shard.failed_lines.get(i) + 1, shard.failed_text.get(i));
+    }
+
+    /**
+     * 进行dictionary的buildup，完成之后模型准备完成，之后添加的语料通过在线更新进入模型。
      */
     public void buildup() {
         if (!prepared) {
             dictionary.buildup();
             prepared = true;
+            _go_online(dictionary);
         }
-        // 临时变量置空
-        _part_text.clear();
-        _part_text = null;
+    }
+
+    /**
+     * 以完成构建的词库作为基础自动机创建在线更新的词库，词库每次产生新的视图时重新编译模型
+     * @param base 完成构建的词库
+     */
+    private void _go_online(ACTrie base) {
+        online_dictionary = new IncrementalDictionary(base, IncrementalDictionary.DEFAULT_MERGE_THRESHOLD,
+                ForkJoinPool.commonPool(), update_lock, this::_compile_model);
     }
 
     /**
      * 分析并插入一条语料，这会向{@code dictionary}中插入语料的组成词语，并向{@code part_sum}中的对应词性进行增加。
+     * 模型准备完成之后等同于只有一行的{@code update_lines}。
      * @param line 语料行
      */
     public void insert_line(String line) {
         if (prepared) {
-            System.err.println(this + "不能再添加语料。");
+            update_lines(List.of(line));
             return;
         }
 
-        // 进行预处理
-        var processed_line = _clean_line(line.trim());
-        // 分析包含的词语和统计词性
-        _analysis_word(processed_line);
-        // 统计这一语料行的转移频率
-        _analysis_transmission(processed_line);
+        direct_parser.parse(line);
+    }
+
+    /**
+     * 在线更新：分析一批语料并加入已经准备完成的模型，不需要重新构建。语料中的词语进入词库的增量自动机，
+     * 词性和转移的统计直接累加，全部解析完成之后重新编译模型并原子地替换，正在进行的标注仍然使用原来的模型。
+     * 增量自动机中的词语达到一定数量时在后台并入基础自动机，也可以通过{@code merge_dictionary}主动合并。<br/>
+     * 每一批语料都会重新构建增量自动机并重新编译模型：前者的代价与增量自动机的大小成正比，大小由词库的合并阈值限制；
+     * 后者需要重新计算词性转移矩阵，并为词库中的每一个词语准备新的发射概率缓存。因此应当尽量成批地更新。
+     * 模型尚未准备完成时等同于逐行调用{@code insert_line}。
+     * @param lines 语料行
+     */
+    public void update_lines(Iterable<String> lines) {
+        if (!prepared) {
+            for (var line : lines)
+                insert_line(line);
+            return;
+        }
 
+        synchronized (update_lock) {
+            int line_count = 0;
+            for (var line : lines) {
+                try {
+                    online_parser.parse(line);
+                } catch (Exception e) {
+                    System.out.printf("第%d行语料解析失败，内容：%s...\n",
+                            line_count + 1, line.substring(0, Math.min(50, line.length())));
+                }
+                ++line_count;
+            }
+
+            var words = online_words;
+            online_words = new ArrayList<>();
+            // 词库产生新的视图时会重新编译模型
+            if (words.isEmpty())
+                _compile_model(model.words);
+            else
+                online_dictionary.add_words(words);
+        }
+    }
+
+    /**
+     * 在后台把在线更新加入的词语并入词库的基础自动机，完成之后重新编译模型
+     * @return 合并完成时结束，模型尚未准备完成时为{@code null}
+     */
+    public CompletableFuture<Void> merge_dictionary() {
+        if (!prepared) {
+            System.err.println(this + "尚未准备完成，无法合并词库。");
+            return null;
+        }
+        return online_dictionary.merge();
     }
 
     /**
@@ -117,86 +728,136 @@ public class HMMTagger {
      * @return 进行过词性标注的分词结果
      */
     final public List<String> tag(final Segment seg) {
-        List<String> res = new ArrayList<>(seg.length());
+        var tags = tag_ids(seg);
+        if (tags == null)
+            return null;
+        List<String> res = new ArrayList<>(tags.length);
+        for (var tag : tags)
+            res.add(TagSet.name_of(tag));
+        return res;
+    }
+
+    /**
+     * 使用Viterbi算法对这个分词结果进行词性标注，概率均在对数空间中进行累加
+     * @param seg 进行词性标注的分词
+     * @return 每个词语的词性在{@link TagSet}中的编号
+     */
+    final public int[] tag_ids(final Segment seg) {
+        if (!prepared) {
+            System.err.println(this + "尚未准备完成，无法进行标注。");
+            return null;
+        }
+        var current = model;
+        var word_ids = new int[seg.length()];
+        for (int i = 0; i < word_ids.length; ++i)
+            word_ids[i] = current.words.id_of(seg.get_which(i).word.text);
+        return tag_word_ids(current, word_ids, word_ids.length);
+    }
 
-        // 词性列表
-        var part_list = new ArrayList<>(part_sum.keySet());
+    /**
+     * 使用Viterbi算法对一串词语进行词性标注，词语以其在模型的词库视图中的编号给出，不需要再查找词库。
+     * @param model 使用的模型，由{@code model()}获得
+     * @param word_ids 词语在{@code model.words}中的编号，-1表示未登录词
+     * @param count 词语的数量，只使用{@code word_ids}的前{@code count}个元素
+     * @return 每个词语的词性在{@link TagSet}中的编号
+     */
+    int[] tag_word_ids(final Model model, final int[] word_ids, final int count) {
+        var tag_list = model.tag_list;
+        var log_trans = model.log_trans;
         // 每一层节点拥有的节点数量
-        int lyr_count = seg.length();
-        int lyr_size = part_list.size();
-        // path_length[i][j] 为从第一层到第 i 层第 j 个节点的最长路径
-        float[][] path_length = new float[lyr_count][lyr_size];
+        int lyr_count = count;
+        int lyr_size = tag_list.length;
+        var res = new int[lyr_count];
+        if (lyr_count == 0)
+            return res;
+
+        // path_length[i][j] 为从第一层到第 i 层第 j 个节点的最长路径的对数概率
+        float[][] path_length = new float[lyr_count][];
         // previous[i][j] 为从第一层到第 i-1 层第 j 个节点的最长路径上的前驱，首层不存储
         int[][] previous = new int[lyr_count - 1][lyr_size];
 
         // 初始化第一个词语
-        for (int i = 0; i < lyr_size; ++i) {
-            path_length[0][i] = characteristic_collapse_probability(part_list.get(i), seg.get_which(0).word);
-        }
+        path_length[0] = model.log_emission_of(word_ids[0]).clone();
 
         // dp
         for (int i = 1; i < lyr_count; ++i) {
+            var prev_layer = path_length[i - 1];
+            var cur_layer = path_length[i] = new float[lyr_size];
+            var emission = model.log_emission_of(word_ids[i]);
+            var prev_index = previous[i - 1];
             for (int j = 0; j < lyr_size; ++j) { // 遍历第 i 层
-                float tmp_max = -Float.MAX_VALUE;
-                int tmp_prev = -1;
-                for (int k = 0; k < part_list.size(); ++k) { // 查找第 i-1 层
-                    float tmp_val = path_length[i - 1][k]
-                            * transmission_probability(part_list.get(k), part_list.get(j))
-                            * characteristic_collapse_probability(part_list.get(j), seg.get_which(i).word);
+                float tmp_max = Float.NEGATIVE_INFINITY;
+                int tmp_prev = 0;
+                for (int k = 0; k < lyr_size; ++k) { // 查找第 i-1 层
+                    float tmp_val = prev_layer[k] + log_trans[k][j];
                     if (tmp_val > tmp_max) {
                         tmp_max = tmp_val;
                         tmp_prev = k;
                     }
                 }
-                path_length[i][j] = tmp_max;
-                previous[i - 1][j] = tmp_prev;
+                cur_layer[j] = tmp_max + emission[j];
+                prev_index[j] = tmp_prev;
             }
         }
 
         int cur_ind = 0;
-        float tmp_max = Float.MIN_VALUE;
+        float tmp_max = Float.NEGATIVE_INFINITY;
         for (int i = 0; i < lyr_size; ++i)
             if (tmp_max < path_length[lyr_count - 1][i]) {
                 tmp_max = path_length[lyr_count - 1][i];
                 cur_ind = i;
             }
 
-        Stack<String> res_stack = new Stack<>();
         for (int i = lyr_count - 2; i >= 0; --i) {
-            res_stack.push(part_list.get(cur_ind));
+            res[i + 1] = tag_list[cur_ind];
             cur_ind = previous[i][cur_ind];
         }
-        res_stack.push(part_list.get(cur_ind));
-        while (!res_stack.empty())
-            res.add(res_stack.pop());
+        res[0] = tag_list[cur_ind];
 
         return res;
     }
 
+    /**
+     * 根据当前的统计和词库视图编译模型，预先计算词性转移的对数概率矩阵以及未登录词的对数发射概率，并准备发射概率的缓存。
+     * 编译完成之后替换当前的模型，调用时必须持有{@code update_lock}
+     * @param words 词库视图
+     */
+    private void _compile_model(IncrementalDictionary.Snapshot words) {
+        _ensure_tag_capacity(TagSet.size());
+        _count_part_words(words);
+        var tag_list = IntStream.range(0, part_sum.length).filter(t -> part_sum[t] > 0).toArray();
+
+        var log_trans = new float[tag_list.length][tag_list.length];
+        var word_count = new int[tag_list.length];
+        for (int k = 0; k < tag_list.length; ++k) {
+            for (int j = 0; j < tag_list.length; ++j)
+                log_trans[k][j] = (float) Math.log(transmission_probability(tag_list[k], tag_list[j],
+                        words.vocal_count() + tag_list.length));
+            word_count[k] = part_word_count[tag_list[k]];
+        }
+        var compiled = new Model(words, tag_list, log_trans, word_count);
+        if (precompute_emissions)
+            compiled.precompute_emissions();
+        model = compiled;
+    }
+
     /**
      * 返回词性转移的概率，按照0.8的参数进行线性插值平滑
-     * @param former_part 前一个词性
-     * @param latter_part 后一个词性
+     * @param former_part 前一个词性的编号
+     * @param latter_part 后一个词性的编号
+     * @param smooth_total 平滑时的分母，即词库中的词语数量加上模型中的词性数量
      * @return 概率
      */
-    private float transmission_probability(final String former_part, final String latter_part) {
-        float p1_ml = ((float) part_sum.get(latter_part) + 1) /
-                (dictionary.vocal_count() + part_sum.size());
-
-        // 如果找不到对应的转移，返回 null，这时应该手动置为 0
-        int trans_freq;
-        var trans_freq_tree = part_trans.get(former_part);
-        if (trans_freq_tree == null)
-            trans_freq = 0;
-        else {
-            var trans_freq_tree_val = trans_freq_tree.get(latter_part);
-            trans_freq = trans_freq_tree_val == null ? 0 : trans_freq_tree_val;
-        }
-
-        var ptsf = part_trans_sum_freq.get(former_part);
-        var pt_tree = part_trans.get(former_part);
-        ptsf = ptsf == null ? 0 : ptsf;
-        var pt = pt_tree == null ? 0 : pt_tree.size();
+    private float transmission_probability(final int former_part, final int latter_part, final int smooth_total) {
+        float p1_ml = ((float) part_sum[latter_part] + 1) / smooth_total;
+
+        int trans_freq = part_trans[former_part][latter_part];
+        int ptsf = part_trans_sum_freq[former_part];
+        // 前一个词性之后出现过的词性的种类数
+        int pt = 0;
+        for (var freq : part_trans[former_part])
+            if (freq > 0)
+                ++pt;
         float p2_ml = ((float) trans_freq + 1) / (ptsf + pt);
 
         p2_ml = Float.isFinite(p2_ml) ? p2_ml : 0.f;
@@ -205,184 +866,216 @@ public class HMMTagger {
     }
 
     /**
-     * 获取当前词性表现为特定词语的概率，这个概率使用了+1法进行平滑
-     * @param part 词性
-     * @param word 词语
-     * @return 返回概率
+     * 对应词性增加1，每种词性的词语数量在准备完成时由词库统计
+     * @param part 词性的编号
      */
-    private float characteristic_collapse_probability(final String part, final Word word) {
-        var w_info = dictionary.get_info_of_word(word.text);
-        int w_freq = (w_info == null ? 0 : w_info.info.get_freq_of_type(part));
-        int total = (w_info == null ? 1 : w_info.info.get_type_sum_by_freq());
-
-        return ((float) (w_freq + 1)) / (total + part_word_count.get(part));
+    private void _increase_part(int part) {
+        _ensure_tag_capacity(part + 1);
+        ++part_sum[part];
     }
 
     /**
-     * 分析并插入一条语料，这会向{@code dictionary}中插入语料的组成词语，并向{@code part_sum}中的对应词性进行增加。
-     * @param line 语料行
+     * 进行一个词性转移的统计
+     * @param former 前一个词语的词性的编号
+     * @param latter 后一个词语的词性的编号
      */
-    private void _analysis_word(String line) {
-        // start, end 进行词语的切片，范围为 [start, end-1]
-        int start = 0, end = 1;
-        while (start < line.length()) {
-            if (line.charAt(start) != '[' || line.charAt(start + 1) == '/') {
-                // 进行词语的添加
-                while (end < line.length() && line.charAt(end) != ' ')
-                    ++end;
-                int slash_index = end - 1;
-                while (line.charAt(slash_index) != '/')
-                    --slash_index;
-
-                var word = line.substring(start, slash_index);
-                var part = line.substring(slash_index + 1, end);
-
-                dictionary.add_word(new Word(word, new Word_info(1).add_type(part, 1)));
-
-                // 进行词性的统计
-                _increase_part(word, part);
-            } else { // 嵌套标注的词语
-                // 进行词语的添加
-                while (end < line.length() && line.charAt(end) != ']')
-                    ++end;
-
-                var sub_line = line.substring(start + 1, end);
-
-                // 处理嵌套
-                _analysis_word(sub_line);
-
-                var merge_word = Arrays.stream(sub_line.split("\\s"))
-                        .map(x -> x.substring(0, x.indexOf("/")))
-                        .reduce("", String::concat);
-                var end_end = ++end;
-                end_end =  ++end;
-                while (end_end < line.length() && line.charAt(end_end) != ' ')
-                    ++end_end;
-                var merge_part = line.substring(end, end_end);
-
-                dictionary.add_word(new Word(merge_word, new Word_info(1).add_type(merge_part, 1)));
-                end = end_end;
-
-                // 进行词性的统计
-                _increase_part(merge_word, merge_part);
-
-            }
-            start = ++end;
-            end = start + 1;
-        }
+    private void _increase_trans(int former, int latter) {
+        _ensure_tag_capacity(Math.max(former, latter) + 1);
+        ++part_trans_sum_freq[former];
+        ++part_trans[former][latter];
     }
 
     /**
-     * 分析词性转移频率
-     * @param line 句子
+     * 统计每一种词性拥有的词语的种类数量，即词库中具有该词性的词语的数量。基础自动机的统计结果会被保留，
+     * 之后只需要根据增量自动机中的词语进行修正
+     * @param words 词库视图
      */
-    private void _analysis_transmission(String line) {
-        int start = 0, end = 0;
-        List<String> part_list = new LinkedList<>();
-
-        while (end < line.length()) {
-            if (line.charAt(end) == '[' && line.charAt(end + 1) != '/') {
-                while (line.charAt(end) != ']')
-                    ++end;
-            }
-            while (end < line.length() && line.charAt(end) != ' ')
-                ++end;
-
-            start = end - (end == line.length() ? 1 : 0);
-            while (line.charAt(start) != '/')
-                --start;
-            ++start;
-
-            part_list.add(line.substring(start, end));
-            ++end;
+    private void _count_part_words(IncrementalDictionary.Snapshot words) {
+        var base = words.get_base();
+        if (base != counted_base) {
+            base_word_count = new int[part_word_count.length];
+            for (int i = 0; i < base.vocal_count(); ++i)
+                _count_word(base_word_count, base.get_word(i).info, 1);
+            counted_base = base;
+        }
+        Arrays.fill(part_word_count, 0);
+        System.arraycopy(base_word_count, 0, part_word_count, 0, Math.min(base_word_count.length, part_word_count.length));
+        // 增量自动机中的词语包含了基础自动机中的频率，以增量自动机为准
+        for (int i = base.vocal_count(); i < words.id_bound(); ++i) {
+            var word = words.get_word(i);
+            int base_id = base.get_id_of_word(word.text);
+            if (base_id >= 0)
+                _count_word(part_word_count, base.get_word(base_id).info, -1);
+            _count_word(part_word_count, word.info, 1);
         }
+    }
 
-        var former = part_list.iterator();
-        var latter = part_list.iterator();
+    /**
+     * 把一个词语计入每种词性拥有的词语的种类数量
+     * @param counts 统计数组
+     * @param info 词语的词性信息
+     * @param delta 计入的数量
+     */
+    private static void _count_word(int[] counts, Word_info info, int delta) {
+        for (int j = 0; j < info.get_type_count(); ++j)
+            if (info.get_freq(j) > 0)
+                counts[info.get_tag(j)] += delta;
+    }
 
-        latter.next();
-        while(latter.hasNext())
-            _increase_trans(former.next(), latter.next());
+    /**
+     * 初始化各个统计数组
+     * @param tag_count 初始的词性数量
+     */
+    private void _init_counts(int tag_count) {
+        part_sum = new int[tag_count];
+        part_trans_sum_freq = new int[tag_count];
+        part_trans = new int[tag_count][tag_count];
+        part_word_count = new int[tag_count];
     }
 
     /**
-     * 对句子进行校对。 <br/>
-     * 没有正确标注的标点符号赋予词性 {@code w}<br/>
-     * TODO: 两阶段的字符替换可以合并成一次<br/>
-     * TODO: 正则表达的应用式可以简化，这里为了方便使用了正则
-     * @param line 进行校对的句子
-     * @return 校对之后的结果
+     * 保证各个统计数组可以容纳编号小于{@code tag_count}的词性
+     * @param tag_count 需要容纳的词性数量
      */
-    private static String _clean_line(String line) {
-        StringBuilder result_str = new StringBuilder(line);
-        var matcher_comm = regex_comm.matcher(line);
-        var results_comm = matcher_comm.results().collect(Collectors.toList());
-        var it_comm = results_comm.listIterator(results_comm.size());
+    private void _ensure_tag_capacity(int tag_count) {
+        if (tag_count <= part_sum.length)
+            return;
+        int new_size = Math.max(tag_count, part_sum.length * 2);
+        part_sum = Arrays.copyOf(part_sum, new_size);
+        part_trans_sum_freq = Arrays.copyOf(part_trans_sum_freq, new_size);
+        part_word_count = Arrays.copyOf(part_word_count, new_size);
+        var new_trans = new int[new_size][];
+        for (int i = 0; i < new_size; ++i)
+            new_trans[i] = i < part_trans.length ? Arrays.copyOf(part_trans[i], new_size) : new int[new_size];
+        part_trans = new_trans;
+    }
 
-        while (it_comm.hasPrevious()) {
-            var token = it_comm.previous();
-            if (token.end() >= line.length() || line.charAt(token.end()) != '/')
-                result_str.replace(token.start(), token.end(),
-                        line.substring(token.start(), token.end()) + "/w ");
+    /**
+     * 把准备完成的模型保存为二进制模型文件，依次为：魔数、版本、词性表、{@code part_sum}、{@code part_trans_sum_freq}、
+     * {@code part_word_count}、{@code part_trans}，最后是词库的快照，词库中保存了每个词语在各个词性下的频率。
+     * 词性表就是当前模型的{@code tag_list}，按照模型中的顺序保存，各个统计数组以词性表中的下标为下标，
+     * 加载时词性表会重新登记到{@link TagSet}中。
+     * @param path 模型文件的地址
+     * @return 是否保存成功
+     */
+    public boolean save(String path) {
+        if (!prepared) {
+            System.err.println(this + "尚未准备完成，无法保存模型。");
+            return false;
         }
-
-        var matcher_space = regex_space.matcher(result_str);
-        var results_space = matcher_space.results().collect(Collectors.toList());
-        var it_space = results_space.listIterator(results_space.size());
-
-        while (it_space.hasPrevious()) {
-            var token = it_space.previous();
-            result_str.replace(token.start(), token.end(), " ");
+        try (var out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path), 1 << 16))) {
+            // 持有update_lock，使得保存的统计与模型一致
+            synchronized (update_lock) {
+                // 只保存模型中的词性，其他词性的统计都为0，使得模型文件与TagSet中登记的其他词性无关
+                var tag_list = model.tag_list;
+                out.writeInt(MODEL_MAGIC);
+                out.writeInt(MODEL_VERSION);
+                out.writeInt(tag_list.length);
+                for (var t : tag_list)
+                    SnapshotIO.write_string(out, TagSet.name_of(t));
+                SnapshotIO.write_ints(out, _select(part_sum, tag_list));
+                SnapshotIO.write_ints(out, _select(part_trans_sum_freq, tag_list));
+                SnapshotIO.write_ints(out, _select(part_word_count, tag_list));
+                for (var t : tag_list)
+                    SnapshotIO.write_ints(out, _select(part_trans[t], tag_list));
+                model.words.merged().write_to(out);
+            }
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
         }
+    }
 
-        return result_str.toString();
+    /**
+     * 按照词性表取出统计数组中的对应项
+     * @param counts 以词性编号为下标的统计数组
+     * @param tag_list 词性表
+     * @return 以词性表中的下标为下标的统计数组
+     */
+    private static int[] _select(int[] counts, int[] tag_list) {
+        var res = new int[tag_list.length];
+        for (int k = 0; k < tag_list.length; ++k)
+            res[k] = counts[tag_list[k]];
+        return res;
     }
 
     /**
-     * 对应词性增加1，同时修改每种词性的词语数量
-     * @param part 词性
+     * 通过内存映射加载由{@code save}保存的模型文件，得到一个准备完成的模型。
+     * 词性表中出现空的或者重复的词性、统计数组的长度与词性表不一致时加载失败
+     * @param path 模型文件的地址
+     * @return 加载得到的模型，如果加载失败则为{@code null}
      */
-    private void _increase_part(String word, String part) {
-        if (!part_sum.containsKey(part)) {
-            // 该词性以前未被统计过
-            // 该词性的数量设置为 1
-            part_sum.put(part, 1);
-            // 这个词性下出现了词语 word
-            Set<String> tmpSet = new HashSet<>();
-            tmpSet.add(word);
-            _part_text.put(part, tmpSet);
-            // 这个词性下词语的数量设置为 1
-            part_word_count.put(part, 1);
-        } else {
-            part_sum.put(part, part_sum.get(part) + 1);
-            var wordSet = _part_text.get(part);
-            if (!wordSet.contains(word)) {
-                wordSet.add(word);
-                part_word_count.put(part, part_word_count.get(part) + 1);
+    public static HMMTagger load(String path) {
+        try {
+            var buf = SnapshotIO.map(path);
+            if (!SnapshotIO.check_header(buf, MODEL_MAGIC, MODEL_VERSION, "HMMTagger"))
+                return null;
+            // 文件中词性的下标到当前进程中词性编号的映射
+            int tag_count = buf.getInt();
+            if (tag_count < 0 || tag_count > buf.remaining() / Integer.BYTES) {
+                System.err.printf("模型文件%s中的词性数量%d不正确。\n", path, tag_count);
+                return null;
+            }
+            var names = new HashSet<String>();
+            var tags = new int[tag_count];
+            for (int t = 0; t < tags.length; ++t) {
+                var name = SnapshotIO.read_string(buf);
+                if (name.isEmpty() || !names.add(name)) {
+                    System.err.printf("模型文件%s中第%d个词性\"%s\"为空或者重复。\n", path, t + 1, name);
+                    return null;
+                }
+                tags[t] = TagSet.intern(name);
+            }
+            var sum = SnapshotIO.read_ints(buf);
+            var trans_sum_freq = SnapshotIO.read_ints(buf);
+            var word_count = SnapshotIO.read_ints(buf);
+            var trans = new int[tags.length][];
+            for (int t = 0; t < tags.length; ++t)
+                trans[t] = SnapshotIO.read_ints(buf);
+            if (sum.length != tag_count || trans_sum_freq.length != tag_count || word_count.length != tag_count
+                    || Arrays.stream(trans).anyMatch(row -> row.length != tag_count)) {
+                System.err.printf("模型文件%s中统计数组的长度与词性数量%d不一致。\n", path, tag_count);
+                return null;
+            }
+            var dict = ACTrie.read_from(buf);
+            if (dict == null)
+                return null;
+
+            var tagger = new HMMTagger(dict);
+            for (int t = 0; t < tags.length; ++t) {
+                tagger.part_sum[tags[t]] = sum[t];
+                tagger.part_trans_sum_freq[tags[t]] = trans_sum_freq[t];
+                tagger.part_word_count[tags[t]] = word_count[t];
+                for (int u = 0; u < tags.length; ++u)
+                    tagger.part_trans[tags[t]][tags[u]] = trans[t][u];
             }
+            tagger._go_online(dict);
+            return tagger;
+        } catch (IOException | BufferUnderflowException e) {
+            e.printStackTrace();
+            return null;
         }
     }
-    // 这是个临时变量，用于记录某一词性下是否已经统计了某一词语
-    private Map<String, Set<String>> _part_text = new HashMap<>();
 
     /**
-     * 进行一个词性转移的统计
-     * @param former 前一个词语的词性
-     * @param latter 后一个词语的词性
+     * 设置是否预先计算词库中所有词语的发射概率。默认在标注时按需计算并缓存，预先计算之后标注时不再有计算的开销，
+     * 代价是每次编译模型时多花一些时间和内存。设置为{@code true}时如果模型已经准备完成，会立即计算当前的模型
+     * @param v 是否预先计算
+     */
+    public void set_precompute_emissions(boolean v) {
+        precompute_emissions = v;
+        var current = model();
+        if (v && current != null)
+            current.precompute_emissions();
+    }
+
+    /**
+     * 返回当前的模型，模型的词库视图中词语的编号可以直接传给{@code tag_word_ids}
+     * @return 当前的模型，模型尚未准备完成时为{@code null}
      */
-    private void _increase_trans(String former, String latter) {
-        if (!part_trans.containsKey(former)) {
-            part_trans.put(former, new HashMap<>());
-            part_trans_sum_freq.put(former, 1);
-        } else {
-            part_trans_sum_freq.put(former, part_trans_sum_freq.get(former) + 1);
-        }
-
-        var temp = part_trans.get(former);
-        if (!temp.containsKey(latter))
-            temp.put(latter, 1);
-        else
-            temp.put(latter, temp.get(latter) + 1);
+    Model model() {
+        return prepared ? model : null;
     }
 
     /**
@@ -390,6 +1083,6 @@ public class HMMTagger {
      * @param stringer 输出节点信息的接口
      */
     public void print_dictionary(ACTrie.ACTrie_node.ACTrie_node_stringer stringer) {
-        dictionary.travel_through(stringer);
+        (prepared ? model.words.merged() : dictionary).travel_through(stringer);
     }
 }
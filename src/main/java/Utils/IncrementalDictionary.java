@@ -0,0 +1,548 @@
+package Utils;
+
+import Dictionary.Seg_unit;
+import Dictionary.Segment;
+import Dictionary.SegmentDictionary;
+import Dictionary.Word;
+import Dictionary.Word_info;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+/**
+ * 支持增量更新的词库。完成构建的AC自动机作为基础自动机，之后添加的词语放入一个增量自动机中，分词时两个自动机同时查找，
+ * 正向最长匹配、逆向最长匹配和最大概率分词都在两个自动机的并集上进行。<br/>
+ * 增量自动机只包含新增的词语，每次添加词语之后由所有尚未并入基础自动机的词语重新构建，因此新词可以立即生效。
+ * 新增的词语达到{@code merge_threshold}时在后台把增量自动机并入基础自动机，合并期间新增的词语进入下一个增量自动机，
+ * 合并完成之后原子地替换，如果这时新增的词语又达到了阈值则立即开始下一次合并。<br/>
+ * 因此每次添加词语的代价与增量自动机的大小成正比，上限大约是{@code merge_threshold}加上一次合并期间新增的词语数量，
+ * 与基础自动机的大小无关；阈值越小添加越快，但是合并越频繁，每次合并的代价与整个词库的大小成正比。<br/>
+ * 查询总是在某一个不可变的{@link Snapshot}上进行，可以被多个线程同时使用。
+ */
+public class IncrementalDictionary implements SegmentDictionary {
+    // 默认的合并阈值
+    public static final int DEFAULT_MERGE_THRESHOLD = 4096;
+
+    /**
+     * 词库在某一时刻的不可变视图，由基础自动机和增量自动机组成。<br/>
+     * 词语的编号在两个自动机中连续排列，基础自动机中的词语编号不变，增量自动机中的词语编号加上基础自动机的词语数量。
+     * 同时出现在两个自动机中的词语以增量自动机为准，其词性频率为两者之和。<br/>
+     * 最大概率分词使用的一元概率以合并之后的词库为准，与合并之后的自动机按照同样的方式计算，因此给出完全相同的结果。
+     */
+    public static class Snapshot {
+        // 基础自动机
+        private final ACTrie base;
+        // 增量自动机，没有新增词语时为null
+        private final ACTrie delta;
+        // 基础自动机中的词语数量
+        private final int base_vocab;
+        // 总词数
+        private final int vocab;
+        // 增量自动机中的词语在合并之后的词库中的对数一元概率
+        private final float[] delta_log_prob;
+        // 合并之后的词库中一元概率的分母的对数
+        private final double log_total;
+        // 词库外单字在合并之后的词库中的对数一元概率
+        private final float log_prob_oov;
+        // 由增量自动机中的词语逆序之后构成的AC自动机，在第一次进行逆向最长匹配时构建
+        private volatile ACTrie reversed_delta;
+
+        private Snapshot(ACTrie base, ACTrie delta, int new_words) {
+            this.base = base;
+            this.delta = delta;
+            this.base_vocab = base.vocal_count();
+            this.vocab = base_vocab + new_words;
+
+            // 合并之后的分母：新词计入词频和词语数量，已有的词语只计入增加的词频
+            long total = base.prob_total();
+            int delta_vocab = delta == null ? 0 : delta.vocal_count();
+            var delta_freq = new int[delta_vocab];
+            for (int i = 0; i < delta_vocab; ++i) {
+                var word = delta.get_word(i);
+                delta_freq[i] = word.info.get_type_sum_by_freq();
+                int base_id = base.get_id_of_word(word.text);
+                total += base_id >= 0 ? delta_freq[i] - base.get_word(base_id).info.get_type_sum_by_freq() : delta_freq[i] + 1;
+            }
+            log_total = Math.log(total);
+            delta_log_prob = new float[delta_vocab];
+            for (int i = 0; i < delta_vocab; ++i)
+                delta_log_prob[i] = (float) (Math.log(delta_freq[i] + 1) - log_total);
+            log_prob_oov = (float) -log_total;
+        }
+
+        /**
+         * 获取句段中[from, to)范围内的词语的编号
+         * @param text 句段
+         * @param from 词语的开头
+         * @param to 词语的结尾
+         * @return 词语编号，如果没有这个词语则返回-1
+         */
+        public int id_of(CharSequence text, int from, int to) {
+            if (delta != null) {
+                int id = delta.get_id_of_word(text, from, to);
+                if (id >= 0)
+                    return base_vocab + id;
+            }
+            return base.get_id_of_word(text, from, to);
+        }
+
+        /**
+         * 获取词语的编号
+         * @param text 词语
+         * @return 词语编号，如果没有这个词语则返回-1
+         */
+        public int id_of(CharSequence text) {
+            return id_of(text, 0, text.length());
+        }
+
+        /**
+         * 获取编号对应的词语
+         * @param word_id 词语编号
+         * @return 词语
+         */
+        public Word get_word(int word_id) {
+            return word_id < base_vocab ? base.get_word(word_id) : delta.get_word(word_id - base_vocab);
+        }
+
+        /**
+         * 编号的上界，所有的词语编号都小于这个值
+         * @return 编号的上界
+         */
+        public int id_bound() {
+            return base_vocab + (delta == null ? 0 : delta.vocal_count());
+        }
+
+        /**
+         * 返回词语的数量，同时出现在两个自动机中的词语只计算一次
+         * @return 词语的数量
+         */
+        public int vocal_count() {
+            return vocab;
+        }
+
+        /**
+         * 返回基础自动机
+         * @return 基础自动机
+         */
+        public ACTrie get_base() {
+            return base;
+        }
+
+        /**
+         * 是否有尚未并入基础自动机的词语
+         * @return 是否有增量自动机
+         */
+        public boolean has_delta() {
+            return delta != null;
+        }
+
+        /**
+         * 在两个自动机上同时进行正向最长匹配，每个位置选取两个自动机中更长的词语，长度相同时选取增量自动机中的词语
+         * @param text 进行分词的句段
+         * @param result 用于保存结果的缓冲区，写入之前会被清空，其中的编号为本视图中的编号
+         * @return {@code result}
+         */
+        public ACTrie.Token_buffer forward_segment(CharSequence text, ACTrie.Token_buffer result) {
+            if (delta == null)
+                return base.forward_segment_sentence(text, result);
+            result.clear();
+            int length = text.length();
+            int start = 0;
+            while (start < length) {
+                int base_state = base.longest_match_state(text, start);
+                int delta_state = delta.longest_match_state(text, start);
+                int base_len = base_state < 0 ? 0 : base.depth_of(base_state);
+                int delta_len = delta_state < 0 ? 0 : delta.depth_of(delta_state);
+                if (delta_len > 0 && delta_len >= base_len)
+                    result.add(start, delta_len, base_vocab + delta.word_id_of(delta_state));
+                else if (base_len > 0)
+                    result.add(start, base_len, base.word_id_of(base_state));
+                else
+                    result.add(start, 1, -1);
+                start += result.length(result.size() - 1);
+            }
+            return result;
+        }
+
+        /**
+         * 在两个自动机上同时进行逆向最长匹配，每个位置选取两个自动机中更长的词语，长度相同时选取增量自动机中的词语
+         * @param text 进行分词的句段
+         * @param reversed_base 基础自动机的逆序AC自动机，见{@link ACTrie#reversed()}
+         * @param result 用于保存结果的缓冲区，写入之前会被清空，其中的编号为本视图中的编号
+         * @return {@code result}
+         */
+        public ACTrie.Token_buffer backward_segment(CharSequence text, ACTrie reversed_base, ACTrie.Token_buffer result) {
+            if (delta == null)
+                return reversed_base.backward_segment_reversed(text, result);
+            var reversed = reversed_delta();
+            result.clear();
+            int end = text.length();
+            while (end > 0) {
+                int base_state = reversed_base.longest_match_state_backward(text, end);
+                int delta_state = reversed.longest_match_state_backward(text, end);
+                int base_len = base_state < 0 ? 0 : reversed_base.depth_of(base_state);
+                int delta_len = delta_state < 0 ? 0 : reversed.depth_of(delta_state);
+                if (delta_len > 0 && delta_len >= base_len)
+                    result.add(end - delta_len, delta_len, base_vocab + reversed.word_id_of(delta_state));
+                else if (base_len > 0)
+                    result.add(end - base_len, base_len, reversed_base.word_id_of(base_state));
+                else
+                    result.add(end - 1, 1, -1);
+                end -= result.length(result.size() - 1);
+            }
+            result.reverse();
+            return result;
+        }
+
+        /**
+         * 在两个自动机的词图的并集上进行最大概率分词，见{@link ACTrie#max_probability_segment_sentence(CharSequence, ACTrie.Token_buffer)}。
+         * 两个自动机中以同一个位置结尾的词语都按照长度降序排列，合并之后按照起点升序处理，
+         * 起点相同的两个词语是同一个词语，以增量自动机为准。
+         * @param text 进行分词的句段
+         * @param result 用于保存结果的缓冲区，写入之前会被清空，其中的编号为本视图中的编号
+         * @return {@code result}
+         */
+        public ACTrie.Token_buffer max_probability_segment(CharSequence text, ACTrie.Token_buffer result) {
+            if (delta == null)
+                return base.max_probability_segment_sentence(text, result);
+            result.clear();
+            int length = text.length();
+            if (length == 0)
+                return result;
+            var base_hits = base.match_patterns_for(text, new ACTrie.Match_buffer(length));
+            var delta_hits = delta.match_patterns_for(text, new ACTrie.Match_buffer());
+
+            // 考虑0~i-1长度的句子，其最大对数概率为path_prob[i]
+            var path_prob = new float[length + 1];
+            // 考虑0~i-1长度的句子，最后一个分词的起点和编号，编号为-1表示最后一个字是词库外的单字
+            var path_start = new int[length + 1];
+            var path_word = new int[length + 1];
+            int b = 0, d = 0;
+            for (int i = 1; i <= length; ++i) {
+                float tmp_prob = Float.NEGATIVE_INFINITY;
+                int tmp_start = i - 1;
+                int tmp_word = -1;
+                boolean single = false;
+                for (;;) {
+                    boolean has_base = b < base_hits.size() && base_hits.end(b) == i - 1;
+                    boolean has_delta = d < delta_hits.size() && delta_hits.end(d) == i - 1;
+                    if (!has_base && !has_delta)
+                        break;
+                    int start, word;
+                    float prob;
+                    if (has_delta && (!has_base || delta_hits.start(d) <= base_hits.start(b))) {
+                        start = delta_hits.start(d);
+                        word = base_vocab + delta_hits.word_id(d);
+                        prob = delta_log_prob[delta_hits.word_id(d)];
+                        if (has_base && base_hits.start(b) == start)
+                            ++b;
+                        ++d;
+                    } else {
+                        start = base_hits.start(b);
+                        word = base_hits.word_id(b);
+                        // 基础自动机中的对数概率以原来的分母计算，这里按照合并之后的分母重新计算
+                        prob = (float) (Math.log(base.get_word(word).info.get_type_sum_by_freq() + 1) - log_total);
+                        ++b;
+                    }
+                    single |= start == i - 1;
+                    prob += path_prob[start];
+                    if (prob > tmp_prob) {
+                        tmp_prob = prob;
+                        tmp_start = start;
+                        tmp_word = word;
+                    }
+                }
+                // 最后一个字是词库外的单字
+                if (!single && path_prob[i - 1] + log_prob_oov > tmp_prob) {
+                    tmp_prob = path_prob[i - 1] + log_prob_oov;
+                    tmp_start = i - 1;
+                    tmp_word = -1;
+                }
+                path_prob[i] = tmp_prob;
+                path_start[i] = tmp_start;
+                path_word[i] = tmp_word;
+            }
+
+            // 逆序生成，再恢复正序
+            for (int i = length; i > 0; i = path_start[i])
+                result.add(path_start[i], i - path_start[i], path_word[i]);
+            result.reverse();
+            return result;
+        }
+
+        /**
+         * 获取增量自动机对应的逆序AC自动机
+         * @return 逆序AC自动机
+         */
+        private ACTrie reversed_delta() {
+            var reversed = reversed_delta;
+            if (reversed == null) {
+                synchronized (this) {
+                    reversed = reversed_delta;
+                    if (reversed == null)
+                        reversed_delta = reversed = delta.reversed();
+                }
+            }
+            return reversed;
+        }
+
+        /**
+         * 根据分词结果生成{@link Segment}，词库中的词语直接使用词库中的{@link Word}，单字新建{@link Word}
+         * @param text 进行分词的句段
+         * @param tokens 分词结果，其中的编号为本视图中的编号
+         * @return 分词结果
+         */
+        public Segment to_segment(CharSequence text, ACTrie.Token_buffer tokens) {
+            var segment = new Segment(tokens.size());
+            for (int i = 0; i < tokens.size(); ++i) {
+                int start = tokens.start(i);
+                var word = tokens.word_id(i) >= 0
+                        ? get_word(tokens.word_id(i))
+                        : new Word(text.subSequence(start, start + tokens.length(i)).toString());
+                segment.add_segment(new Seg_unit(word, start));
+            }
+            return segment;
+        }
+
+        /**
+         * 把增量自动机并入基础自动机，构建一个新的AC自动机
+         * @return 完成构建的AC自动机，没有增量自动机时直接返回基础自动机
+         */
+        public ACTrie merged() {
+            if (delta == null)
+                return base;
+            var trie = new ACTrie();
+            for (int i = 0; i < base_vocab; ++i) {
+                var word = base.get_word(i);
+                // 同时出现在增量自动机中的词语以增量自动机为准
+                if (delta.get_id_of_word(word.text) < 0)
+                    trie.add_word(word);
+            }
+            for (int i = 0; i < delta.vocal_count(); ++i)
+                trie.add_word(delta.get_word(i));
+            trie.buildup();
+            return trie;
+        }
+    }
+
+    // 保护以下状态的锁
+    private final Object lock;
+    // 当前的视图
+    private volatile Snapshot current;
+    // 基础自动机
+    private ACTrie base;
+    // 尚未开始合并的新增词语，按照首次添加的顺序
+    private Map<String, Word_info> delta_words = new LinkedHashMap<>();
+    // 正在并入基础自动机的新增词语，没有进行合并时为null
+    private Map<String, Word_info> merging_words = null;
+    // 正在进行的合并
+    private CompletableFuture<Void> merge_future = null;
+    // 新增词语达到这个数量时开始合并，同时也是增量自动机大小的上限
+    private final int merge_threshold;
+    // 执行合并的线程池
+    private final Executor executor;
+    // 每次产生新的视图时调用，调用时持有lock
+    private final Consumer<Snapshot> listener;
+
+    /**
+     * 使用默认的合并阈值，在公共的ForkJoinPool中进行合并
+     * @param base 完成构建的AC自动机
+     */
+    public IncrementalDictionary(ACTrie base) {
+        this(base, DEFAULT_MERGE_THRESHOLD, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param base 完成构建的AC自动机
+     * @param merge_threshold 新增词语达到这个数量时在后台开始合并，至少为1
+     * @param executor 执行合并的线程池
+     */
+    public IncrementalDictionary(ACTrie base, int merge_threshold, Executor executor) {
+        this(base, merge_threshold, executor, new Object(), null);
+    }
+
+    /**
+     * 与其他对象共用同一个锁，并在每次产生新的视图时通知{@code listener}
+     * @param base 完成构建的AC自动机
+     * @param merge_threshold 合并阈值
+     * @param executor 执行合并的线程池
+     * @param lock 使用的锁
+     * @param listener 接收新的视图，调用时持有{@code lock}，可以为{@code null}
+     */
+    IncrementalDictionary(ACTrie base, int merge_threshold, Executor executor, Object lock, Consumer<Snapshot> listener) {
+        this.base = base;
+        this.merge_threshold = Math.max(merge_threshold, 1);
+        this.executor = executor;
+        this.lock = lock;
+        this.listener = listener;
+        synchronized (lock) {
+            publish();
+        }
+    }
+
+    /**
+     * 添加一个词语，如果已经存在则累加其词性频率
+     * @param word 词语
+     */
+    public void add_word(Word word) {
+        add_words(List.of(word));
+    }
+
+    /**
+     * 添加一批词语，添加完成之后这些词语立即生效。代价与尚未并入基础自动机的词语数量成正比，应当尽量成批地添加
+     * @param words 词语
+     */
+    public void add_words(List<Word> words) {
+        synchronized (lock) {
+            for (var word : words) {
+                var info = delta_words.get(word.text);
+                if (info == null)
+                    delta_words.put(word.text, word.info.copy());
+                else
+                    info.append_type(word.info);
+            }
+            publish();
+            if (delta_words.size() >= merge_threshold)
+                merge();
+        }
+    }
+
+    /**
+     * 在后台把新增的词语并入基础自动机，合并期间的查询使用原有的视图，新增的词语进入下一个增量自动机
+     * @return 合并完成时结束，如果已经在合并则返回正在进行的合并
+     */
+    public CompletableFuture<Void> merge() {
+        synchronized (lock) {
+            if (merge_future != null)
+                return merge_future;
+            if (delta_words.isEmpty())
+                return CompletableFuture.completedFuture(null);
+
+            // 当前视图中的增量自动机正好由将要合并的词语组成
+            var snapshot = current;
+            merging_words = delta_words;
+            delta_words = new LinkedHashMap<>();
+            // 先登记再提交，线程池可能直接在当前线程中完成合并
+            var future = new CompletableFuture<Void>();
+            merge_future = future;
+            executor.execute(() -> {
+                finish_merge(snapshot);
+                future.complete(null);
+            });
+            return future;
+        }
+    }
+
+    /**
+     * 构建合并之后的基础自动机并替换
+     * @param snapshot 开始合并时的视图
+     */
+    private void finish_merge(Snapshot snapshot) {
+        ACTrie merged = null;
+        try {
+            merged = snapshot.merged();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+        synchronized (lock) {
+            if (merged != null) {
+                base = merged;
+            } else {
+                // 合并失败，把词语放回增量自动机
+                var words = merging_words;
+                for (var entry : delta_words.entrySet()) {
+                    var info = words.get(entry.getKey());
+                    if (info == null)
+                        words.put(entry.getKey(), entry.getValue());
+                    else
+                        info.append_type(entry.getValue());
+                }
+                delta_words = words;
+            }
+            merging_words = null;
+            merge_future = null;
+            publish();
+            // 合并期间新增的词语已经达到阈值，继续合并
+            if (delta_words.size() >= merge_threshold)
+                merge();
+        }
+    }
+
+    /**
+     * 根据基础自动机和新增的词语构建新的视图，调用时必须持有lock
+     */
+    private void publish() {
+        current = layer(base, merging_words, delta_words);
+        if (listener != null)
+            listener.accept(current);
+    }
+
+    /**
+     * 构建视图，增量自动机中的词语的词性频率为基础自动机中的频率加上新增的频率
+     * @param base 基础自动机
+     * @param layers 按照顺序排列的新增词语，可以为{@code null}
+     * @return 视图
+     */
+    @SafeVarargs
+    private static Snapshot layer(ACTrie base, Map<String, Word_info>... layers) {
+        var delta = new ACTrie();
+        int new_words = 0;
+        for (var words : layers) {
+            if (words == null)
+                continue;
+            for (var entry : words.entrySet()) {
+                var text = entry.getKey();
+                if (delta.get_info_of_word(text) == null) {
+                    int id = base.get_id_of_word(text);
+                    if (id >= 0)
+                        delta.add_word(base.get_word(id));
+                    else
+                        ++new_words;
+                }
+                delta.add_word(new Word(text, entry.getValue()));
+            }
+        }
+        if (delta.vocal_count() == 0)
+            return new Snapshot(base, null, 0);
+        delta.buildup();
+        return new Snapshot(base, delta, new_words);
+    }
+
+    /**
+     * 返回当前的视图
+     * @return 当前的视图
+     */
+    public Snapshot snapshot() {
+        return current;
+    }
+
+    @Override
+    public Segment segment(String text) {
+        var snapshot = current;
+        return snapshot.to_segment(text, snapshot.forward_segment(text, new ACTrie.Token_buffer(text.length())));
+    }
+
+    /**
+     * 查找词语，新增的词语的词性频率包含了基础自动机中的频率
+     * @param text 词语
+     * @return 词语，如果没有这个词语则为{@code null}
+     */
+    public Word get_info_of_word(String text) {
+        var snapshot = current;
+        int id = snapshot.id_of(text);
+        return id >= 0 ? snapshot.get_word(id) : null;
+    }
+
+    /**
+     * 返回词语的数量
+     * @return 词语的数量
+     */
+    public int vocal_count() {
+        return current.vocal_count();
+    }
+}
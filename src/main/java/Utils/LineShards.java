@@ -0,0 +1,106 @@
+package Utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * 按行切分文本文件的工具类。文件按照字节范围切分为若干分片，分片的边界对齐到行的开头，
+ * 每个分片通过内存映射逐行读取，不同的分片可以在不同的线程中同时读取。文件的编码为UTF8。<br/>
+ * 与{@link java.io.BufferedReader#readLine()}相同，一行以'\n'、'\r'或者"\r\n"结尾，"\r\n"不会被分到两个分片中。
+ */
+class LineShards {
+    // 单个分片的最大字节数，保证每个分片可以被一次映射
+    static final long MAX_SHARD_SIZE = 1L << 30;
+
+    private LineShards() {}
+
+    /**
+     * 计算各个分片的边界，第i个分片为[bounds[i], bounds[i+1])，除了首尾之外每个边界都是一行的开头。
+     * 文件较大时分片的数量会多于{@code shard_count}，使得每个分片不超过{@link #MAX_SHARD_SIZE}
+     * @param channel 文件
+     * @param shard_count 分片的数量
+     * @return 分片的边界
+     * @throws IOException 读取失败
+     */
+    static long[] bounds(FileChannel channel, int shard_count) throws IOException {
+        long size = channel.size();
+        int count = (int) Math.max(Math.max(shard_count, 1), (size + MAX_SHARD_SIZE - 1) / MAX_SHARD_SIZE);
+        var bounds = new long[count + 1];
+        bounds[count] = size;
+        var buf = ByteBuffer.allocate(4096);
+        for (int i = 1; i < count; ++i) {
+            // 从名义上的边界开始向后寻找下一行的开头
+            long pos = Math.max(size / count * i, bounds[i - 1]);
+            long bound = size;
+            search:
+            while (pos < size) {
+                buf.clear();
+                int read = channel.read(buf, pos);
+                if (read <= 0)
+                    break;
+                for (int j = 0; j < read; ++j) {
+                    byte b = buf.get(j);
+                    if (b == '\n' || b == '\r') {
+                        bound = pos + j + 1;
+                        // "\r\n"之后才是下一行的开头，'\n'可能在下一次读取的范围内
+                        if (b == '\r' && bound < size && next_byte(channel, buf, read, j + 1, bound) == '\n')
+                            ++bound;
+                        break search;
+                    }
+                }
+                pos += read;
+            }
+            bounds[i] = bound;
+        }
+        return bounds;
+    }
+
+    /**
+     * 获取文件中的一个字节，如果已经在缓冲区中则直接读取
+     * @param channel 文件
+     * @param buf 缓冲区
+     * @param read 缓冲区中已经读取的字节数
+     * @param index 字节在缓冲区中的下标
+     * @param pos 字节在文件中的位置
+     * @return 字节，读取不到时为-1
+     * @throws IOException 读取失败
+     */
+    private static int next_byte(FileChannel channel, ByteBuffer buf, int read, int index, long pos) throws IOException {
+        if (index < read)
+            return buf.get(index);
+        var one = ByteBuffer.allocate(1);
+        return channel.read(one, pos) == 1 ? one.get(0) : -1;
+    }
+
+    /**
+     * 逐行读取文件中[from, to)范围内的所有行，范围的两端都必须是行的开头或者文件末尾。行尾的换行符不包含在行中
+     * @param channel 文件
+     * @param from 起始的字节位置
+     * @param to 结束的字节位置
+     * @param action 对每一行进行的处理
+     * @throws IOException 读取失败
+     */
+    static void for_each_line(FileChannel channel, long from, long to, Consumer<String> action) throws IOException {
+        if (to <= from)
+            return;
+        var buf = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+        int size = buf.limit();
+        var bytes = new byte[256];
+        int start = 0;
+        while (start < size) {
+            int end = start;
+            byte b = 0;
+            while (end < size && (b = buf.get(end)) != '\n' && b != '\r')
+                ++end;
+            int len = end - start;
+            if (len > bytes.length)
+                bytes = new byte[Math.max(len, bytes.length << 1)];
+            buf.get(start, bytes, 0, len);
+            action.accept(new String(bytes, 0, len, StandardCharsets.UTF_8));
+            start = end + (b == '\r' && end + 1 < size && buf.get(end + 1) == '\n' ? 2 : 1);
+        }
+    }
+}
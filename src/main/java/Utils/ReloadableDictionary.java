@@ -0,0 +1,254 @@
+package Utils;
+
+import Dictionary.Segment;
+import Dictionary.SegmentDictionary;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 可以在运行时替换词库的分词器。当前使用的AC自动机保存在原子引用中，新的词库在后台线程中构建或加载，完成之后原子地替换，
+ * 替换之前已经开始的分词仍然在原来的词库上完成，不会被打断。<br/>
+ * 记录每次重新加载的耗时，以及替换之后新旧两个词库同时存在的时间（即旧词库上最后一个分词完成的时间）。
+ * 加载完成时已经被更新的版本取代的重新加载不会替换词库，单独计数，不计入成功的重新加载。可以被多个线程同时使用。
+ */
+public class ReloadableDictionary implements SegmentDictionary {
+
+    /**
+     * 重新加载的统计信息
+     */
+    public static class Metrics {
+        // 成功的重新加载的次数
+        final public long reload_count;
+        // 失败的重新加载的次数
+        final public long failed_count;
+        // 加载完成时已经被更新的版本取代、因此没有替换词库的重新加载的次数
+        final public long superseded_count;
+        // 最近一次成功的重新加载的耗时，单位为纳秒
+        final public long last_reload_nanos;
+        // 最近一次被替换的词库与新词库同时存在的时间，单位为纳秒
+        final public long last_coexist_nanos;
+        // 新旧词库同时存在的最长时间，单位为纳秒
+        final public long max_coexist_nanos;
+        // 已经被替换但是仍然有分词在进行的词库的数量
+        final public int retiring_count;
+
+        public Metrics(long reload_count, long failed_count, long superseded_count, long last_reload_nanos,
+                       long last_coexist_nanos, long max_coexist_nanos, int retiring_count) {
+            this.reload_count = reload_count;
+            this.failed_count = failed_count;
+            this.superseded_count = superseded_count;
+            this.last_reload_nanos = last_reload_nanos;
+            this.last_coexist_nanos = last_coexist_nanos;
+            this.max_coexist_nanos = max_coexist_nanos;
+            this.retiring_count = retiring_count;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("reloads: %d, failed: %d, superseded: %d, last reload: %.3fms, " +
+                            "last coexist: %.3fms, max coexist: %.3fms, retiring: %d",
+                    reload_count, failed_count, superseded_count, last_reload_nanos / 1e6,
+                    last_coexist_nanos / 1e6, max_coexist_nanos / 1e6, retiring_count);
+        }
+    }
+
+    /**
+     * 词库的一个版本
+     */
+    private static class Version {
+        // 版本号，越新的版本越大
+        final long generation;
+        // AC自动机
+        final ACTrie trie;
+        // 在AC自动机上进行分词的分词器
+        final SegmentDictionary dict;
+        // 正在这个版本上进行的分词的数量
+        final AtomicInteger in_flight = new AtomicInteger();
+        // 是否已经被替换
+        volatile boolean retired = false;
+        // 被替换的时间
+        volatile long retired_at;
+        // 被替换之后是否已经没有正在进行的分词
+        final AtomicBoolean drained = new AtomicBoolean(false);
+
+        Version(long generation, ACTrie trie, SegmentDictionary dict) {
+            this.generation = generation;
+            this.trie = trie;
+            this.dict = dict;
+        }
+    }
+
+    // 当前使用的版本
+    private final AtomicReference<Version> current;
+    // 根据AC自动机构造分词器
+    private final Function<ACTrie, SegmentDictionary> factory;
+    // 执行重新加载的线程池
+    private final Executor executor;
+    // 下一个版本号
+    private final AtomicLong next_generation = new AtomicLong(1);
+
+    // 以下为统计信息
+    private final AtomicLong reload_count = new AtomicLong();
+    private final AtomicLong failed_count = new AtomicLong();
+    private final AtomicLong superseded_count = new AtomicLong();
+    private volatile long last_reload_nanos = 0;
+    private volatile long last_coexist_nanos = 0;
+    private final AtomicLong max_coexist_nanos = new AtomicLong();
+    private final AtomicInteger retiring_count = new AtomicInteger();
+
+    /**
+     * 使用正向最长匹配进行分词，在公共的ForkJoinPool中重新加载
+     * @param trie 完成构建的AC自动机
+     */
+    public ReloadableDictionary(ACTrie trie) {
+        this(trie, t -> t::forward_segment_sentence, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param trie 完成构建的AC自动机
+     * @param factory 根据AC自动机构造分词器，例如{@code UnigramSegmenter::new}
+     * @param executor 执行重新加载的线程池
+     */
+    public ReloadableDictionary(ACTrie trie, Function<ACTrie, SegmentDictionary> factory, Executor executor) {
+        this.factory = factory;
+        this.executor = executor;
+        this.current = new AtomicReference<>(new Version(0, trie, factory.apply(trie)));
+    }
+
+    @Override
+    public Segment segment(String text) {
+        while (true) {
+            var version = current.get();
+            version.in_flight.incrementAndGet();
+            // 在获取和登记之间被替换，则改为使用新的版本
+            if (current.get() != version) {
+                release(version);
+                continue;
+            }
+            try {
+                return version.dict.segment(text);
+            } finally {
+                release(version);
+            }
+        }
+    }
+
+    /**
+     * 在后台读取文本格式的词库文件并重新构建AC自动机，完成之后替换当前的词库
+     * @param dict_path 词库文件的地址，格式见{@link ACTrie#ACTrie(String)}
+     * @return 替换完成时结果为{@code true}，加载失败或者被更新的版本取代时为{@code false}
+     */
+    public CompletableFuture<Boolean> reload_dictionary(String dict_path) {
+        return reload(() -> new ACTrie(dict_path));
+    }
+
+    /**
+     * 在后台加载由{@link ACTrie#save}保存的二进制快照，完成之后替换当前的词库
+     * @param snapshot_path 快照文件的地址
+     * @return 替换完成时结果为{@code true}，加载失败或者被更新的版本取代时为{@code false}
+     */
+    public CompletableFuture<Boolean> reload_snapshot(String snapshot_path) {
+        return reload(() -> ACTrie.load(snapshot_path));
+    }
+
+    /**
+     * 在后台构建新的AC自动机，完成之后替换当前的词库。同时进行多次重新加载时，开始得最晚的一次生效
+     * @param loader 构建AC自动机，失败时返回{@code null}或者尚未完成构建的AC自动机
+     * @return 替换完成时结果为{@code true}，加载失败或者被更新的版本取代时为{@code false}
+     */
+    public CompletableFuture<Boolean> reload(Supplier<ACTrie> loader) {
+        long generation = next_generation.getAndIncrement();
+        return CompletableFuture.supplyAsync(() -> {
+            long start = System.nanoTime();
+            Version version;
+            try {
+                var trie = loader.get();
+                version = trie == null || !trie.is_built() ? null : new Version(generation, trie, factory.apply(trie));
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                version = null;
+            }
+            if (version == null) {
+                System.err.println(this + " 重新加载词库失败。");
+                failed_count.incrementAndGet();
+                return false;
+            }
+            long elapsed = System.nanoTime() - start;
+            if (!swap(version)) {
+                superseded_count.incrementAndGet();
+                return false;
+            }
+            last_reload_nanos = elapsed;
+            reload_count.incrementAndGet();
+            return true;
+        }, executor);
+    }
+
+    /**
+     * 替换当前的版本，如果当前的版本更新则放弃替换
+     * @param version 新的版本
+     * @return 是否替换成功
+     */
+    private boolean swap(Version version) {
+        Version old;
+        do {
+            old = current.get();
+            if (old.generation > version.generation)
+                return false;
+        } while (!current.compareAndSet(old, version));
+
+        old.retired_at = System.nanoTime();
+        retiring_count.incrementAndGet();
+        old.retired = true;
+        if (old.in_flight.get() == 0)
+            drain(old);
+        return true;
+    }
+
+    /**
+     * 结束一次分词，被替换的版本上最后一次分词结束时记录同时存在的时间
+     * @param version 进行分词的版本
+     */
+    private void release(Version version) {
+        if (version.in_flight.decrementAndGet() == 0 && version.retired)
+            drain(version);
+    }
+
+    /**
+     * 被替换的版本上已经没有正在进行的分词
+     * @param version 被替换的版本
+     */
+    private void drain(Version version) {
+        if (!version.drained.compareAndSet(false, true))
+            return;
+        long coexist = System.nanoTime() - version.retired_at;
+        last_coexist_nanos = coexist;
+        max_coexist_nanos.accumulateAndGet(coexist, Math::max);
+        retiring_count.decrementAndGet();
+    }
+
+    /**
+     * 返回当前使用的AC自动机
+     * @return 当前使用的AC自动机
+     */
+    public ACTrie get_trie() {
+        return current.get().trie;
+    }
+
+    /**
+     * 返回重新加载的统计信息
+     * @return 统计信息
+     */
+    public Metrics get_metrics() {
+        return new Metrics(reload_count.get(), failed_count.get(), superseded_count.get(), last_reload_nanos,
+                last_coexist_nanos, max_coexist_nanos.get(), retiring_count.get());
+    }
+}
@@ -2,18 +2,30 @@ package Utils;
 
 import Dictionary.Seg_unit;
 import Dictionary.SegmentDictionary;
-import Dictionary.Word;
+import Dictionary.TagSet;
 
 import java.io.BufferedReader;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
- * 用于评测分词结果的类
+ * 用于评测分词结果的类。答案文件每行为一个句子，词语之间以空白字符分隔，考虑词性时每个词语带有词性标注。<br/>
+ * {@code evaluate}把答案文件按照字节范围切分为若干块，各块并行地分词和计数，最后合并计数得到指标，
+ * 分词器必须可以被多个线程同时调用；{@code getResult}在当前线程中逐行读取。
+ * {@code evaluate_tagging}以同样的方式评测分词和词性标注的流水线。
  */
 public class SegmentGrader {
 
@@ -27,6 +39,11 @@ public class SegmentGrader {
     // 指示统计分类结果的时候是否考虑词性
     private boolean consider_partOfSpeech;
 
+    // 并行评测时每个线程平均分到的块数，块数多于线程数使得各线程的负载更加均衡
+    private static final int CHUNKS_PER_THREAD = 4;
+    // 答案中没有标注词性的词语视为标点符号
+    private static final String PUNCTUATION_TAG = "w";
+
     /**
      * 分词结果的记录类
      */
@@ -37,6 +54,14 @@ public class SegmentGrader {
         final public float recall;
         // f1值
         final public float f1;
+        // 评测的句子数量
+        final public long sentences;
+        // 评测的字符数量
+        final public long characters;
+        // 每秒处理的句子数量，没有计时的时候为0
+        final public double sentences_per_second;
+        // 每秒处理的字符数量，没有计时的时候为0
+        final public double chars_per_second;
 
         /**
          * 构造函数，用于构造参数
@@ -45,14 +70,461 @@ public class SegmentGrader {
          * @param f1 f1值
          */
         public Result(float precision, float recall, float f1) {
+            this(precision, recall, f1, 0, 0, 0, 0);
+        }
+
+        /**
+         * @param precision 准确率
+         * @param recall 召回率
+         * @param f1 f1值
+         * @param sentences 句子数量
+         * @param characters 字符数量
+         * @param sentences_per_second 每秒处理的句子数量
+         * @param chars_per_second 每秒处理的字符数量
+         */
+        public Result(float precision, float recall, float f1, long sentences, long characters,
+                      double sentences_per_second, double chars_per_second) {
             this.precision = precision;
             this.recall = recall;
             this.f1 = f1;
+            this.sentences = sentences;
+            this.characters = characters;
+            this.sentences_per_second = sentences_per_second;
+            this.chars_per_second = chars_per_second;
+        }
+
+        @Override
+        public String toString() {
+            var res = String.format("p: %.3f, r: %.3f, f1: %.3f", precision, recall, f1);
+            if (sentences_per_second > 0)
+                res += String.format(", %d sentences, %d chars, %.1f sentences/s, %.1f chars/s",
+                        sentences, characters, sentences_per_second, chars_per_second);
+            return res;
+        }
+    }
+
+    /**
+     * 分词评测的计数，可以合并
+     */
+    public static class Counts {
+        // 答案中的词语数量
+        public long gold = 0;
+        // 分词结果中的词语数量
+        public long test = 0;
+        // 两者都有的词语数量，即起点和终点都相同的词语
+        public long correct = 0;
+        // 句子数量
+        public long sentences = 0;
+        // 字符数量
+        public long characters = 0;
+
+        /**
+         * 把另一份计数累加到这一份中
+         * @param other 另一份计数
+         * @return this
+         */
+        public Counts merge(Counts other) {
+            gold += other.gold;
+            test += other.test;
+            correct += other.correct;
+            sentences += other.sentences;
+            characters += other.characters;
+            return this;
+        }
+
+        /**
+         * 计算评测指标
+         * @param nanos 评测所用的时间，单位为纳秒，为0时不计算速度
+         * @return 评测指标
+         */
+        public Result to_result(long nanos) {
+            float p = correct / (float) test;
+            float r = correct / (float) gold;
+            float f1 = 2 * p * r / (p + r);
+            double seconds = nanos / 1e9;
+            return nanos > 0
+                    ? new Result(p, r, f1, sentences, characters, sentences / seconds, characters / seconds)
+                    : new Result(p, r, f1, sentences, characters, 0, 0);
+        }
+    }
+
+    /**
+     * 词性标注的评测指标
+     */
+    public static class Tagging_result {
+        // 分词的指标，以及每秒处理的句子数量和字符数量
+        final public Result segmentation;
+        // 在切分正确的词语中词性也正确的比例
+        final public float tag_accuracy;
+        // 切分和词性都正确的准确率、召回率和f1值
+        final public float precision;
+        final public float recall;
+        final public float f1;
+        // 出现过的词性，下标与下面的数组对应
+        final public String[] tags;
+        // 混淆矩阵，confusion[i][j]为切分正确的词语中答案词性为tags[i]、标注为tags[j]的数量
+        final public int[][] confusion;
+        // 每个词性的准确率和召回率，只有切分和词性都正确才计为正确
+        final public float[] tag_precision;
+        final public float[] tag_recall;
+
+        public Tagging_result(Result segmentation, float tag_accuracy, float precision, float recall, float f1,
+                              String[] tags, int[][] confusion, float[] tag_precision, float[] tag_recall) {
+            this.segmentation = segmentation;
+            this.tag_accuracy = tag_accuracy;
+            this.precision = precision;
+            this.recall = recall;
+            this.f1 = f1;
+            this.tags = tags;
+            this.confusion = confusion;
+            this.tag_precision = tag_precision;
+            this.tag_recall = tag_recall;
+        }
+
+        /**
+         * 输出每个词性的准确率和召回率以及混淆矩阵，行为答案的词性，列为标注的词性
+         * @return 表格
+         */
+        public String confusion_table() {
+            var builder = new StringBuilder();
+            for (int i = 0; i < tags.length; ++i)
+                builder.append(String.format("%s\tp: %.3f, r: %.3f\n", tags[i], tag_precision[i], tag_recall[i]));
+            for (var tag : tags)
+                builder.append('\t').append(tag);
+            builder.append('\n');
+            for (int i = 0; i < tags.length; ++i) {
+                builder.append(tags[i]);
+                for (int j = 0; j < tags.length; ++j)
+                    builder.append('\t').append(confusion[i][j]);
+                builder.append('\n');
+            }
+            return builder.toString();
         }
 
         @Override
         public String toString() {
-            return String.format("p: %.3f, r: %.3f, f1: %.3f", precision, recall, f1);
+            return String.format("segmentation: [%s], tag accuracy: %.3f, p: %.3f, r: %.3f, f1: %.3f",
+                    segmentation, tag_accuracy, precision, recall, f1);
+        }
+    }
+
+    /**
+     * 逐行解析答案，得到去掉空白之后的句子以及每个词语的终点。<br/>
+     * 带有词性标注的答案中每个词语的形式为{@code 词语/词性}，嵌套标注的词语{@code [词语/词性 词语/词性]/词性}按照内部的词语评测，
+     * 没有标注词性的词语视为标点符号，词性为{@code w}
+     */
+    static class Gold_parser {
+        // 是否带有词性标注
+        private final boolean annotated;
+        // 去掉空白之后的句子
+        private final StringBuilder sentence = new StringBuilder();
+        // 句子
+        String text;
+        // 词语的数量
+        int count;
+        // 每个词语在句子中的终点
+        int[] ends = new int[64];
+        // 每个词语的词性在答案行中的范围[tag_from, tag_to)，没有标注词性时都为-1
+        int[] tag_from = new int[64];
+        int[] tag_to = new int[64];
+
+        Gold_parser(boolean annotated) {
+            this.annotated = annotated;
+        }
+
+        /**
+         * 解析一行答案
+         * @param line 答案行
+         * @return 是否包含词语
+         */
+        boolean parse(String line) {
+            sentence.setLength(0);
+            count = 0;
+            int i = 0;
+            while (i < line.length()) {
+                while (i < line.length() && is_space(line.charAt(i)))
+                    ++i;
+                if (i == line.length())
+                    break;
+                int start = i;
+                while (i < line.length() && !is_space(line.charAt(i)))
+                    ++i;
+                if (count == ends.length) {
+                    ends = Arrays.copyOf(ends, count << 1);
+                    tag_from = Arrays.copyOf(tag_from, count << 1);
+                    tag_to = Arrays.copyOf(tag_to, count << 1);
+                }
+                if (annotated)
+                    annotated_token(line, start, i);
+                else
+                    sentence.append(line, start, i);
+                ends[count++] = sentence.length();
+            }
+            text = sentence.toString();
+            return count > 0;
+        }
+
+        /**
+         * 解析一个带有词性标注的词语
+         * @param line 答案行
+         * @param start 词语在答案行中的起点
+         * @param end 词语在答案行中的终点
+         */
+        private void annotated_token(String line, int start, int end) {
+            // 去掉嵌套标注的括号以及整体的词性
+            if (line.charAt(start) == '[' && end - start > 1 && line.charAt(start + 1) != '/')
+                ++start;
+            int close = line.lastIndexOf("]/", end - 2);
+            if (close > start && line.lastIndexOf('/', close - 1) > start)
+                end = close;
+
+            int slash = line.lastIndexOf('/', end - 1);
+            if (slash > start) {
+                sentence.append(line, start, slash);
+                tag_from[count] = slash + 1;
+                tag_to[count] = end;
+            } else {
+                sentence.append(line, start, end);
+                tag_from[count] = tag_to[count] = -1;
+            }
+        }
+
+        /**
+         * 获取词语的词性
+         * @param line 答案行
+         * @param index 词语的编号
+         * @return 词性
+         */
+        String tag_of(String line, int index) {
+            return tag_from[index] < 0 ? PUNCTUATION_TAG : line.substring(tag_from[index], tag_to[index]);
+        }
+
+        /**
+         * 与正则表达式中的{@code \s}相同的空白字符
+         * @param c 字符
+         * @return 是否为空白字符
+         */
+        private static boolean is_space(char c) {
+            return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+        }
+    }
+
+    /**
+     * 逐行评测，一个实例只能在一个线程中使用
+     */
+    private interface Scorer {
+        void score(String line);
+    }
+
+    /**
+     * 逐行评测分词结果，计数累加到自身的{@code counts}中
+     */
+    private static class Line_scorer implements Scorer {
+        // 分词器
+        private final SegmentDictionary dict;
+        // 累计的计数
+        final Counts counts = new Counts();
+        // 答案的解析器
+        private final Gold_parser gold;
+
+        Line_scorer(SegmentDictionary dict, boolean annotated) {
+            this.dict = dict;
+            this.gold = new Gold_parser(annotated);
+        }
+
+        /**
+         * 评测一行答案，空行不计入
+         * @param line 答案行
+         */
+        @Override
+        public void score(String line) {
+            if (!gold.parse(line))
+                return;
+
+            var text = gold.text;
+            var test_sep = dict.segment(text).get_raw();
+            counts.gold += gold.count;
+            counts.test += test_sep.size();
+            counts.sentences += 1;
+            counts.characters += text.length();
+            counts.correct += count_correct(text, gold.ends, gold.count, test_sep);
+        }
+    }
+
+    /**
+     * 统计分词结果中正确的词语数量。按照终点同时推进两边，起点和终点都相同并且文本一致的词语计为正确
+     * @param text 句子
+     * @param gold_ends 答案中每个词语在句子中的终点
+     * @param gold_count 答案中的词语数量
+     * @param test_sep 分词结果
+     * @return 正确的词语数量
+     */
+    static int count_correct(String text, int[] gold_ends, int gold_count, List<Seg_unit> test_sep) {
+        int correct = 0;
+        int g = 0, gold_start = 0, test_start = 0;
+        for (var unit : test_sep) {
+            var word = unit.word.text;
+            int test_end = test_start + word.length();
+            while (g < gold_count && gold_ends[g] < test_end)
+                gold_start = gold_ends[g++];
+            if (g < gold_count && gold_ends[g] == test_end) {
+                if (gold_start == test_start && text.regionMatches(test_start, word, 0, word.length()))
+                    ++correct;
+                gold_start = gold_ends[g++];
+            }
+            test_start = test_end;
+        }
+        return correct;
+    }
+
+    /**
+     * 逐行评测分词和词性标注的结果。词性使用局部的编号，各块的统计最后按照词性的名字合并
+     */
+    private static class Tag_scorer implements Scorer {
+        // 分词和词性标注的流水线
+        private final SegmentTagger pipeline;
+        // 分词的计数
+        final Counts counts = new Counts();
+        // 局部编号对应的词性
+        final List<String> tags = new ArrayList<>();
+        // 词性对应的局部编号
+        private final Map<String, Integer> tag_index = new HashMap<>();
+        // TagSet中的编号对应的局部编号，没有对应时为-1
+        private int[] local_of_global = new int[0];
+        // 以下统计以局部编号为下标
+        int[][] confusion = new int[16][16];
+        int[] gold_tags = new int[16];
+        int[] test_tags = new int[16];
+
+        // 答案的解析器
+        private final Gold_parser gold = new Gold_parser(true);
+        // 分词结果
+        private final ACTrie.Token_buffer tokens = new ACTrie.Token_buffer();
+        // 答案中每个词语的词性的局部编号
+        private int[] gold_local = new int[64];
+
+        Tag_scorer(SegmentTagger pipeline) {
+            this.pipeline = pipeline;
+        }
+
+        @Override
+        public void score(String line) {
+            if (!gold.parse(line))
+                return;
+
+            var text = gold.text;
+            var test_global = pipeline.process(text, tokens);
+            counts.gold += gold.count;
+            counts.test += tokens.size();
+            counts.sentences += 1;
+            counts.characters += text.length();
+
+            if (gold_local.length < gold.count)
+                gold_local = new int[gold.ends.length];
+            for (int i = 0; i < gold.count; ++i) {
+                gold_local[i] = local_of(gold.tag_of(line, i));
+                ++gold_tags[gold_local[i]];
+            }
+
+            // 按照终点同时推进两边，切分正确的词语计入混淆矩阵
+            int g = 0, gold_start = 0;
+            for (int i = 0; i < tokens.size(); ++i) {
+                int test_local = local_of_global(test_global[i]);
+                ++test_tags[test_local];
+                int test_start = tokens.start(i);
+                int test_end = test_start + tokens.length(i);
+                while (g < gold.count && gold.ends[g] < test_end)
+                    gold_start = gold.ends[g++];
+                if (g < gold.count && gold.ends[g] == test_end) {
+                    if (gold_start == test_start) {
+                        ++counts.correct;
+                        ++confusion[gold_local[g]][test_local];
+                    }
+                    gold_start = gold.ends[g++];
+                }
+            }
+        }
+
+        /**
+         * 把TagSet中的编号转换为局部编号
+         * @param global TagSet中的编号
+         * @return 局部编号
+         */
+        private int local_of_global(int global) {
+            if (global >= local_of_global.length) {
+                int old = local_of_global.length;
+                local_of_global = Arrays.copyOf(local_of_global, Math.max(global + 1, old << 1));
+                Arrays.fill(local_of_global, old, local_of_global.length, -1);
+            }
+            if (local_of_global[global] < 0)
+                local_of_global[global] = local_of(TagSet.name_of(global));
+            return local_of_global[global];
+        }
+
+        /**
+         * 获取词性的局部编号，第一次遇到时分配编号
+         * @param tag 词性
+         * @return 局部编号
+         */
+        int local_of(String tag) {
+            var id = tag_index.get(tag);
+            if (id != null)
+                return id;
+            id = tags.size();
+            tags.add(tag);
+            tag_index.put(tag, id);
+            if (id >= gold_tags.length) {
+                int size = gold_tags.length << 1;
+                gold_tags = Arrays.copyOf(gold_tags, size);
+                test_tags = Arrays.copyOf(test_tags, size);
+                var new_confusion = new int[size][];
+                for (int i = 0; i < size; ++i)
+                    new_confusion[i] = i < confusion.length ? Arrays.copyOf(confusion[i], size) : new int[size];
+                confusion = new_confusion;
+            }
+            return id;
+        }
+
+        /**
+         * 把另一块的统计按照词性的名字合并到这一块中
+         * @param other 另一块的统计
+         * @return this
+         */
+        Tag_scorer merge(Tag_scorer other) {
+            counts.merge(other.counts);
+            var local = new int[other.tags.size()];
+            for (int i = 0; i < local.length; ++i)
+                local[i] = local_of(other.tags.get(i));
+            for (int i = 0; i < local.length; ++i) {
+                gold_tags[local[i]] += other.gold_tags[i];
+                test_tags[local[i]] += other.test_tags[i];
+                for (int j = 0; j < local.length; ++j)
+                    confusion[local[i]][local[j]] += other.confusion[i][j];
+            }
+            return this;
+        }
+
+        /**
+         * 计算评测指标
+         * @param nanos 评测所用的时间，单位为纳秒
+         * @return 评测指标
+         */
+        Tagging_result to_result(long nanos) {
+            int n = tags.size();
+            long tag_correct = 0;
+            var matrix = new int[n][];
+            var precision = new float[n];
+            var recall = new float[n];
+            for (int i = 0; i < n; ++i) {
+                matrix[i] = Arrays.copyOf(confusion[i], n);
+                tag_correct += confusion[i][i];
+                precision[i] = confusion[i][i] / (float) test_tags[i];
+                recall[i] = confusion[i][i] / (float) gold_tags[i];
+            }
+            float p = tag_correct / (float) counts.test;
+            float r = tag_correct / (float) counts.gold;
+            return new Tagging_result(counts.to_result(nanos), tag_correct / (float) counts.correct,
+                    p, r, 2 * p * r / (p + r), tags.toArray(new String[0]), matrix, precision, recall);
         }
     }
 
@@ -145,61 +617,103 @@ public class SegmentGrader {
      * @return 分词指标
      */
     private Result getResult(SegmentDictionary dict, boolean do_limit, int line_limit) {
-        // 不考虑词性的分词方式
-        if (!consider_partOfSpeech) {
-            // TODO: 此处代码默认分词结果文件没有词性标注
-            if (!(file_path.equals("") || file_reader == null || buf_reader == null)) {
-                try {
-                    int A = 0, B = 0, A_cap_B = 0;
-                    while (buf_reader.ready() && (!do_limit || --line_limit >= 0)) {
-                        var temp_begin = new AtomicInteger(0);
-                        var line_array = buf_reader.readLine().split("\\s+");
-                        // 正确的分词结果数组
-                        var golden_sep = Arrays.stream(line_array)
-                                .map(x -> new Seg_unit(new Word(x), temp_begin.addAndGet(x.length())))
-                                .collect(Collectors.toList());
-                        // 这个句子经过dict得到的分词结果
-                        var test_sep = dict.segment(Arrays.stream(line_array)
-                                .reduce("", String::concat)).get_raw();
-
-                        // 当前索引到的目标字符串中的位置
-                        int golden_index = 0;
-                        int test_index = 0;
-                        // 当前匹配到的词语的迭代器
-                        var golden_it = golden_sep.iterator();
-                        var test_it = test_sep.iterator();
-
-                        A += golden_sep.size();
-                        B += test_sep.size();
-                        while (golden_it.hasNext() && test_it.hasNext()) {
-                            if (golden_index < test_index)
-                                golden_index += golden_it.next().word.text.length();
-                            else if (golden_index > test_index)
-                                test_index += test_it.next().word.text.length();
-                            else {
-                                var gn = golden_it.next();
-                                var tn = test_it.next();
-                                golden_index += gn.word.text.length();
-                                test_index += tn.word.text.length();
-
-                                if (gn.word.text.equals(tn.word.text))
-                                    ++A_cap_B;
-                            }
-                        }
-                    }
-                    float p = A_cap_B / (float) B;
-                    float r = A_cap_B / (float) A;
-                    float f1 = 2 * p * r / (p + r);
-                    return new Result(p, r, f1);
-                } catch(IOException e) {
-                    e.printStackTrace();
-                    return null;
-                }
-            } else {
-                System.err.println("SegmentGrader未加载文件。");
+        if (!(file_path == null || file_path.equals("") || file_reader == null || buf_reader == null)) {
+            try {
+                // 考虑词性时答案带有词性标注，这里只评测分词
+                var scorer = new Line_scorer(dict, consider_partOfSpeech);
+                long start = System.nanoTime();
+                while (buf_reader.ready() && (!do_limit || --line_limit >= 0))
+                    scorer.score(buf_reader.readLine());
+                return scorer.counts.to_result(System.nanoTime() - start);
+            } catch(IOException e) {
+                e.printStackTrace();
                 return null;
             }
         } else {
+            System.err.println("SegmentGrader未加载文件。");
+            return null;
+        }
+    }
+
+    /**
+     * 使用与处理器数量相同的线程并行评测整个答案文件
+     * @param dict 分词器，必须可以被多个线程同时调用
+     * @return 分词指标，包括每秒处理的句子数量和字符数量
+     */
+    public Result evaluate(SegmentDictionary dict) {
+        return evaluate(dict, Runtime.getRuntime().availableProcessors() * CHUNKS_PER_THREAD);
+    }
+
+    /**
+     * 并行评测整个答案文件。文件按照字节范围切分为{@code chunk_count}块，每块通过内存映射逐行读取、分词和计数，
+     * 各块的计数最后合并得到指标。与{@code getResult}不同，不会消耗已经加载的文件
+     * @param dict 分词器，必须可以被多个线程同时调用
+     * @param chunk_count 块数
+     * @return 分词指标，包括每秒处理的句子数量和字符数量
+     */
+    public Result evaluate(SegmentDictionary dict, int chunk_count) {
+        long start = System.nanoTime();
+        var chunks = _score_chunks(chunk_count, () -> new Line_scorer(dict, consider_partOfSpeech));
+        if (chunks == null)
+            return null;
+        var total = new Counts();
+        chunks.forEach(chunk -> total.merge(chunk.counts));
+        return total.to_result(System.nanoTime() - start);
+    }
+
+    /**
+     * 使用与处理器数量相同的线程并行评测分词和词性标注
+     * @param pipeline 分词和词性标注的流水线
+     * @return 分词和词性标注的指标
+     */
+    public Tagging_result evaluate_tagging(SegmentTagger pipeline) {
+        return evaluate_tagging(pipeline, Runtime.getRuntime().availableProcessors() * CHUNKS_PER_THREAD);
+    }
+
+    /**
+     * 在带有词性标注的答案文件上并行评测分词和词性标注，与{@code evaluate}在同一遍扫描中同时得到分词的指标，
+     * 以及词性的准确率、混淆矩阵和每个词性的准确率和召回率。答案文件的格式与语料库相同，与{@code consider_partOfSpeech}无关
+     * @param pipeline 分词和词性标注的流水线
+     * @param chunk_count 块数
+     * @return 分词和词性标注的指标
+     */
+    public Tagging_result evaluate_tagging(SegmentTagger pipeline, int chunk_count) {
+        long start = System.nanoTime();
+        var chunks = _score_chunks(chunk_count, () -> new Tag_scorer(pipeline));
+        if (chunks == null)
+            return null;
+        var total = new Tag_scorer(pipeline);
+        chunks.forEach(total::merge);
+        return total.to_result(System.nanoTime() - start);
+    }
+
+    /**
+     * 把答案文件按照字节范围切分为{@code chunk_count}块，每块通过内存映射逐行读取，在各自的评测器中并行计数
+     * @param chunk_count 块数
+     * @param factory 为每一块创建评测器
+     * @return 按照块的顺序排列的评测器，读取失败时为{@code null}
+     */
+    private <T extends Scorer> List<T> _score_chunks(int chunk_count, Supplier<T> factory) {
+        if (file_path == null || file_path.equals("")) {
+            System.err.println("SegmentGrader未加载文件。");
+            return null;
+        }
+
+        try (var channel = FileChannel.open(Path.of(file_path), StandardOpenOption.READ)) {
+            var bounds = LineShards.bounds(channel, chunk_count);
+            return IntStream.range(0, bounds.length - 1).parallel()
+                    .mapToObj(i -> {
+                        var scorer = factory.get();
+                        try {
+                            LineShards.for_each_line(channel, bounds[i], bounds[i + 1], scorer::score);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                        return scorer;
+                    })
+                    .collect(Collectors.toList());
+        } catch (IOException | UncheckedIOException e) {
+            e.printStackTrace();
             return null;
         }
     }
@@ -0,0 +1,136 @@
+package Utils;
+
+import Dictionary.TagSet;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 分词和词性标注的流水线，分词和标注共用{@link HMMTagger}的词库。<br/>
+ * 分词时AC自动机匹配到的词语编号直接交给Viterbi算法，由编号取得缓存的发射概率，每个词语只需要在AC自动机上走一遍。
+ * 每次处理都使用标注模型当时的模型，三种分词方式都同时查找词库的基础自动机和增量自动机，在线更新加入的词语立即生效。
+ * 可以被多个线程同时使用。
+ */
+public class SegmentTagger {
+
+    /**
+     * 分词的方式
+     */
+    public enum Mode {
+        // 正向最长匹配
+        FORWARD,
+        // 逆向最长匹配
+        BACKWARD,
+        // 基于词频的最大概率分词
+        MAX_PROBABILITY
+    }
+
+    /**
+     * 带有词性的分词结果
+     */
+    public static class Tagged_unit {
+        // 词语的文本
+        public final String text;
+        // 词语在句段中的起点
+        public final int index;
+        // 词语的词性
+        public final String tag;
+
+        public Tagged_unit(String text, int index, String tag) {
+            this.text = text;
+            this.index = index;
+            this.tag = tag;
+        }
+
+        @Override
+        public String toString() {
+            return text + "/" + tag;
+        }
+    }
+
+    // 词性标注模型
+    private final HMMTagger tagger;
+    // 基础自动机的逆向最长匹配分词器，只在BACKWARD方式下使用，词库的基础自动机被替换之后重新构建
+    private volatile BackwardSegmenter backward;
+    // 分词的方式
+    private final Mode mode;
+
+    /**
+     * 使用正向最长匹配进行分词
+     * @param tagger 词性标注模型，尚未准备完成时会先进行准备
+     */
+    public SegmentTagger(HMMTagger tagger) {
+        this(tagger, Mode.FORWARD);
+    }
+
+    /**
+     * @param tagger 词性标注模型，尚未准备完成时会先进行准备
+     * @param mode 分词的方式
+     */
+    public SegmentTagger(HMMTagger tagger, Mode mode) {
+        tagger.buildup();
+        this.tagger = tagger;
+        this.backward = mode == Mode.BACKWARD ? new BackwardSegmenter(tagger.model().words.get_base()) : null;
+        this.mode = mode;
+    }
+
+    /**
+     * 对句段进行分词和词性标注
+     * @param text 句段
+     * @return 按照起点排列的带有词性的分词结果
+     */
+    public List<Tagged_unit> process(String text) {
+        var tokens = new ACTrie.Token_buffer(text.length());
+        var tags = process(text, tokens);
+
+        List<Tagged_unit> res = new ArrayList<>(tokens.size());
+        for (int i = 0; i < tokens.size(); ++i) {
+            int start = tokens.start(i);
+            res.add(new Tagged_unit(text.substring(start, start + tokens.length(i)), start, TagSet.name_of(tags[i])));
+        }
+        return res;
+    }
+
+    /**
+     * 对句段进行分词和词性标注，分词结果写入{@code tokens}
+     * @param text 句段
+     * @param tokens 用于保存分词结果的缓冲区，写入之前会被清空
+     * @return 每个词语的词性在{@link TagSet}中的编号，与{@code tokens}中的词语一一对应
+     */
+    public int[] process(CharSequence text, ACTrie.Token_buffer tokens) {
+        var model = tagger.model();
+        var words = model.words;
+        switch (mode) {
+            case BACKWARD:
+                words.backward_segment(text, backward_of(words.get_base()).get_reversed(), tokens);
+                break;
+            case MAX_PROBABILITY:
+                words.max_probability_segment(text, tokens);
+                break;
+            default:
+                words.forward_segment(text, tokens);
+        }
+
+        var word_ids = new int[tokens.size()];
+        for (int i = 0; i < word_ids.length; ++i)
+            word_ids[i] = tokens.word_id(i);
+        return tagger.tag_word_ids(model, word_ids, word_ids.length);
+    }
+
+    /**
+     * 获取基础自动机对应的逆向最长匹配分词器
+     * @param base 基础自动机
+     * @return 逆向最长匹配分词器
+     */
+    private BackwardSegmenter backward_of(ACTrie base) {
+        var current = backward;
+        if (current.get_trie() != base) {
+            synchronized (this) {
+                current = backward;
+                if (current.get_trie() != base)
+                    backward = current = new BackwardSegmenter(base);
+            }
+        }
+        return current;
+    }
+}
@@ -0,0 +1,225 @@
+package Utils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * 以句子文本为键的有界缓存，用于缓存反复出现的短文本（标题、查询、固定的套话）的处理结果。<br/>
+ * 缓存分为若干段，每一段是一个按照访问顺序排列的{@link LinkedHashMap}，各自加锁并且各自按照最近最少使用的顺序淘汰，
+ * 不同段上的访问互不阻塞。计算结果在锁外进行，同一个文本同时未命中时可能被计算多次，以先放入缓存的结果为准。
+ * 超过长度上限的文本不进入缓存，避免很少重复的长文本挤掉短文本。缓存的值会被多个线程共享，必须是不可变的。
+ * @param <V> 缓存的值
+ */
+public class SentenceCache<V> {
+    // 默认的段数
+    public static final int DEFAULT_STRIPES = 16;
+    // 默认的可缓存文本的最大长度
+    public static final int DEFAULT_MAX_LENGTH = 256;
+
+    /**
+     * 缓存的一段，按照访问顺序排列，超过容量时淘汰最久没有访问的项。访问时需要持有这一段的锁
+     */
+    private static class Stripe<V> {
+        // 按照访问顺序排列的项
+        private final LinkedHashMap<String, V> entries = new LinkedHashMap<>(16, 0.75f, true);
+        // 这一段的容量
+        private final int capacity;
+        // 淘汰的计数
+        private final LongAdder evictions;
+
+        Stripe(int capacity, LongAdder evictions) {
+            this.capacity = capacity;
+            this.evictions = evictions;
+        }
+
+        V get(String key) {
+            return entries.get(key);
+        }
+
+        /**
+         * 放入一项，超过容量时淘汰最久没有访问的项
+         * @param key 文本
+         * @param value 文本对应的值
+         */
+        void put(String key, V value) {
+            entries.put(key, value);
+            if (entries.size() > capacity) {
+                var eldest = entries.entrySet().iterator();
+                eldest.next();
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+
+        void clear() {
+            entries.clear();
+        }
+
+        int size() {
+            return entries.size();
+        }
+    }
+
+    // 各段，段数为2的幂
+    private final List<Stripe<V>> stripes;
+    // 可缓存文本的最大长度
+    private final int max_length;
+
+    // 以下为统计信息
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder bypasses = new LongAdder();
+
+    /**
+     * 使用默认的段数和文本长度上限
+     * @param capacity 缓存的总容量，单位为项
+     */
+    public SentenceCache(int capacity) {
+        this(capacity, DEFAULT_STRIPES, DEFAULT_MAX_LENGTH);
+    }
+
+    /**
+     * @param capacity 缓存的总容量，单位为项，平均分配到各段
+     * @param stripe_count 段数，会向上取整为2的幂
+     * @param max_length 可缓存文本的最大长度
+     */
+    public SentenceCache(int capacity, int stripe_count, int max_length) {
+        int count = Integer.highestOneBit(Math.max(stripe_count, 1) * 2 - 1);
+        int stripe_capacity = Math.max((capacity + count - 1) / count, 1);
+        stripes = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i)
+            stripes.add(new Stripe<>(stripe_capacity, evictions));
+        this.max_length = max_length;
+    }
+
+    /**
+     * 获取文本对应的值，未命中时计算并放入缓存
+     * @param key 文本
+     * @param loader 计算文本对应的值，返回{@code null}时不放入缓存
+     * @return 文本对应的值
+     */
+    public V get(String key, Function<String, V> loader) {
+        return get(key, loader, null);
+    }
+
+    /**
+     * 获取文本对应的值，未命中或者缓存的值已经失效时计算并放入缓存
+     * @param key 文本
+     * @param loader 计算文本对应的值，返回{@code null}时不放入缓存
+     * @param valid 检查缓存的值是否仍然有效，为{@code null}时总是有效
+     * @return 文本对应的值
+     */
+    public V get(String key, Function<String, V> loader, Predicate<? super V> valid) {
+        if (key.length() > max_length) {
+            bypasses.increment();
+            return loader.apply(key);
+        }
+
+        var stripe = stripe_of(key);
+        V value;
+        synchronized (stripe) {
+            value = stripe.get(key);
+        }
+        if (value != null && (valid == null || valid.test(value))) {
+            hits.increment();
+            return value;
+        }
+
+        misses.increment();
+        value = loader.apply(key);
+        if (value != null)
+            synchronized (stripe) {
+                var current = stripe.get(key);
+                if (current != null && (valid == null || valid.test(current)))
+                    return current;
+                stripe.put(key, value);
+            }
+        return value;
+    }
+
+    /**
+     * 清空缓存，统计信息保持不变
+     */
+    public void clear() {
+        for (var stripe : stripes)
+            synchronized (stripe) {
+                stripe.clear();
+            }
+    }
+
+    /**
+     * 返回缓存中的项数
+     * @return 项数
+     */
+    public int size() {
+        int res = 0;
+        for (var stripe : stripes)
+            synchronized (stripe) {
+                res += stripe.size();
+            }
+        return res;
+    }
+
+    /**
+     * 返回命中的次数
+     * @return 命中的次数
+     */
+    public long get_hit_count() {
+        return hits.sum();
+    }
+
+    /**
+     * 返回未命中的次数，包括缓存的值失效的情况
+     * @return 未命中的次数
+     */
+    public long get_miss_count() {
+        return misses.sum();
+    }
+
+    /**
+     * 返回因为超过容量而被淘汰的项数
+     * @return 淘汰的项数
+     */
+    public long get_eviction_count() {
+        return evictions.sum();
+    }
+
+    /**
+     * 返回因为文本过长而没有使用缓存的次数
+     * @return 没有使用缓存的次数
+     */
+    public long get_bypass_count() {
+        return bypasses.sum();
+    }
+
+    /**
+     * 返回命中率，不计入没有使用缓存的访问
+     * @return 命中率，还没有访问时为0
+     */
+    public double get_hit_rate() {
+        long hit = hits.sum();
+        long total = hit + misses.sum();
+        return total == 0 ? 0 : hit / (double) total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("size: %d, hits: %d, misses: %d, hit rate: %.3f, evictions: %d, bypasses: %d",
+                size(), get_hit_count(), get_miss_count(), get_hit_rate(), get_eviction_count(), get_bypass_count());
+    }
+
+    /**
+     * 选择文本所在的段
+     * @param key 文本
+     * @return 文本所在的段
+     */
+    private Stripe<V> stripe_of(String key) {
+        int h = key.hashCode();
+        return stripes.get((h ^ (h >>> 16)) & (stripes.size() - 1));
+    }
+}
@@ -0,0 +1,149 @@
+package Utils;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 二进制快照的读写工具类。写入使用{@link DataOutputStream}，读取在{@link ByteBuffer}上进行，两者都是大端序。
+ * 读取时一般通过{@code map}把整个文件以只读方式映射到内存中，只读的数组通过{@code view_ints}直接在映射上读取，
+ * 需要修改的数组通过{@code read_ints}整块复制到堆上，省去了逐字节读取的流和中间缓冲区。
+ * 读取时数组和字符串的长度都会与缓冲区剩余的字节数进行比较，文件被截断或者损坏时抛出{@link BufferUnderflowException}。
+ */
+class SnapshotIO {
+    // 批量写入整数数组时使用的缓冲区大小
+    private static final int CHUNK = 1 << 14;
+
+    /**
+     * 以只读方式映射整个文件
+     * @param path 文件地址
+     * @return 映射得到的缓冲区
+     * @throws IOException 打开或映射失败
+     */
+    static MappedByteBuffer map(String path) throws IOException {
+        try (var channel = FileChannel.open(Path.of(path), StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * 检查快照的魔数和版本
+     * @param buf 快照
+     * @param magic 期望的魔数
+     * @param version 期望的版本
+     * @param what 快照的名字，用于输出错误信息
+     * @return 是否匹配
+     */
+    static boolean check_header(ByteBuffer buf, int magic, int version, String what) {
+        int file_magic = buf.getInt();
+        int file_version = buf.getInt();
+        if (file_magic != magic) {
+            System.err.println("不是" + what + "快照文件。");
+            return false;
+        }
+        if (file_version != version) {
+            System.err.printf("%s快照版本为%d，当前只支持版本%d。\n", what, file_version, version);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 写入一个整数数组，先写长度，再写内容
+     * @param out 输出流
+     * @param arr 整数数组
+     * @throws IOException 写入失败
+     */
+    static void write_ints(DataOutputStream out, int[] arr) throws IOException {
+        write_ints(out, IntBuffer.wrap(arr));
+    }
+
+    /**
+     * 写入一个整数缓冲区中从0到limit的内容，格式与{@code write_ints(DataOutputStream, int[])}相同
+     * @param out 输出流
+     * @param arr 整数缓冲区
+     * @throws IOException 写入失败
+     */
+    static void write_ints(DataOutputStream out, IntBuffer arr) throws IOException {
+        int length = arr.limit();
+        out.writeInt(length);
+        var bytes = ByteBuffer.allocate(CHUNK * Integer.BYTES);
+        var ints = bytes.asIntBuffer();
+        for (int from = 0; from < length; from += CHUNK) {
+            int len = Math.min(CHUNK, length - from);
+            ints.clear();
+            ints.put(arr.duplicate().position(from).limit(from + len));
+            out.write(bytes.array(), 0, len * Integer.BYTES);
+        }
+    }
+
+    /**
+     * 读取一个长度，并检查缓冲区中是否还有足够的字节
+     * @param buf 快照
+     * @param unit 每个元素的字节数
+     * @return 长度
+     * @throws BufferUnderflowException 长度为负数或者剩余的字节不足
+     */
+    static int read_length(ByteBuffer buf, int unit) {
+        int len = buf.getInt();
+        if (len < 0 || len > buf.remaining() / unit)
+            throw new BufferUnderflowException();
+        return len;
+    }
+
+    /**
+     * 读取一个由{@code write_ints}写入的整数数组
+     * @param buf 快照
+     * @return 整数数组
+     * @throws BufferUnderflowException 剩余的字节不足
+     */
+    static int[] read_ints(ByteBuffer buf) {
+        var arr = new int[read_length(buf, Integer.BYTES)];
+        buf.asIntBuffer().get(arr);
+        buf.position(buf.position() + arr.length * Integer.BYTES);
+        return arr;
+    }
+
+    /**
+     * 读取一个由{@code write_ints}写入的整数数组，不进行复制，返回缓冲区上的只读视图
+     * @param buf 快照
+     * @return 长度（limit）等于数组长度的只读视图
+     * @throws BufferUnderflowException 剩余的字节不足
+     */
+    static IntBuffer view_ints(ByteBuffer buf) {
+        int len = read_length(buf, Integer.BYTES);
+        var view = buf.slice(buf.position(), len * Integer.BYTES).asIntBuffer().asReadOnlyBuffer();
+        buf.position(buf.position() + len * Integer.BYTES);
+        return view;
+    }
+
+    /**
+     * 写入一个字符串，先写字符数，再按UTF16写入每一个字符
+     * @param out 输出流
+     * @param str 字符串
+     * @throws IOException 写入失败
+     */
+    static void write_string(DataOutputStream out, String str) throws IOException {
+        out.writeInt(str.length());
+        out.writeChars(str);
+    }
+
+    /**
+     * 读取一个由{@code write_string}写入的字符串
+     * @param buf 快照
+     * @return 字符串
+     * @throws BufferUnderflowException 剩余的字节不足
+     */
+    static String read_string(ByteBuffer buf) {
+        var chars = new char[read_length(buf, Character.BYTES)];
+        buf.asCharBuffer().get(chars);
+        buf.position(buf.position() + chars.length * Character.BYTES);
+        return new String(chars);
+    }
+}
@@ -0,0 +1,426 @@
+package Utils;
+
+import Dictionary.Seg_unit;
+import Dictionary.Word;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * 流式分词器，从{@link Reader}或{@link ReadableByteChannel}中逐段读取文本，读取过程中携带AC自动机的状态跨越缓冲区的边界，
+ * 分词结果逐个交给回调或者通过迭代器取出。{@code Seg_unit}的{@code index}为词语在整个流中的位置，
+ * 因为{@code index}是{@code int}，词语的起点超过{@link Integer#MAX_VALUE}时抛出{@link IllegalStateException}，
+ * 更长的输入需要由调用者切分成多个流。<br/>
+ * 支持正向最长匹配和最少词语两种方式：
+ * <ul>
+ *     <li>正向最长匹配：某个位置之后的词语全部已知时（即自动机当前状态可能的最早起点已经越过这个位置），立即输出以这个位置开头的最长词语，
+ *     占用的内存不超过最长词语的长度；</li>
+ *     <li>最少词语：随着读入逐个位置进行动态规划，记录每个位置的最短分词的前驱。最终的分词路径一定经过最近的{@code 最长词语长度}个位置之一，
+ *     所以这些位置的前驱链的公共祖先之前的路径已经确定，可以立即输出，得到的结果与整体分词完全一致。
+ *     占用的内存为最长词语的长度加上前驱链汇合的距离，每读入一个字符只检查最近的这些位置，不会重新扫描已经读入的文本。
+ *     前驱链在{@code MAX_WINDOW}个字符之内仍然没有汇合时（只在病态的词库和文本上出现），强制在这些位置中最早的一个切断，
+ *     此时的结果可能与整体分词不同。</li>
+ * </ul>
+ * 同一个{@code StreamSegmenter}可以同时被多个线程用于不同的流。
+ */
+public class StreamSegmenter {
+    /**
+     * 分词的方式
+     */
+    public enum Mode {
+        // 正向最长匹配，对应{@link ACTrie#forward_segment_sentence}
+        FORWARD,
+        // 最少词语，对应{@link ACTrie#shortest_segment_sentence}
+        SHORTEST
+    }
+
+    // 每次从输入中读取的字符数
+    private static final int BUFFER_SIZE = 8192;
+    // 最少词语方式下，前驱链没有汇合时尚未输出的文本的最大长度
+    private static final int MAX_WINDOW = 1 << 16;
+
+    // 完成构建的AC自动机
+    private final ACTrie trie;
+    // 分词的方式
+    private final Mode mode;
+    // 词库中最长的词语的长度，至少为1
+    private final int max_word_length;
+
+    public StreamSegmenter(ACTrie trie, Mode mode) {
+        this.trie = trie;
+        this.mode = mode;
+        int longest = 1;
+        for (int i = 0; i < trie.vocal_count(); ++i)
+            longest = Math.max(longest, trie.get_word(i).text.length());
+        max_word_length = longest;
+    }
+
+    /**
+     * 对整个输入进行分词，读取到末尾时返回，不关闭输入
+     * @param in 输入
+     * @param sink 接收分词结果的回调
+     * @throws IOException 读取失败
+     * @throws IllegalStateException 词语在流中的位置超过{@link Integer#MAX_VALUE}
+     */
+    public void segment(Reader in, Consumer<Seg_unit> sink) throws IOException {
+        var session = new Session(sink);
+        var buf = new char[BUFFER_SIZE];
+        int len;
+        while ((len = in.read(buf)) >= 0)
+            session.feed(buf, 0, len);
+        session.finish();
+    }
+
+    /**
+     * 对整个字节流进行分词，无法解码的字节以替换字符代替，读取到末尾时返回，不关闭输入
+     * @param in 输入
+     * @param charset 字节流的编码
+     * @param sink 接收分词结果的回调
+     * @throws IOException 读取失败
+     * @throws IllegalStateException 词语在流中的位置超过{@link Integer#MAX_VALUE}
+     */
+    public void segment(ReadableByteChannel in, Charset charset, Consumer<Seg_unit> sink) throws IOException {
+        var decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        segment(Channels.newReader(in, decoder, BUFFER_SIZE), sink);
+    }
+
+    /**
+     * 以迭代器的形式返回分词结果，每次需要更多结果时才从输入中读取
+     * @param in 输入
+     * @return 分词结果的迭代器，读取失败时抛出{@link UncheckedIOException}，
+     * 词语在流中的位置超过{@link Integer#MAX_VALUE}时抛出{@link IllegalStateException}
+     */
+    public Iterator<Seg_unit> iterator(Reader in) {
+        return new Iterator<>() {
+            private final Deque<Seg_unit> ready = new ArrayDeque<>();
+            private final Session session = new Session(ready::add);
+            private final char[] buf = new char[BUFFER_SIZE];
+            private boolean finished = false;
+
+            @Override
+            public boolean hasNext() {
+                while (ready.isEmpty() && !finished) {
+                    try {
+                        int len = in.read(buf);
+                        if (len < 0) {
+                            session.finish();
+                            finished = true;
+                        } else
+                            session.feed(buf, 0, len);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                return !ready.isEmpty();
+            }
+
+            @Override
+            public Seg_unit next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                return ready.poll();
+            }
+        };
+    }
+
+    /**
+     * 一个流的分词状态
+     */
+    private class Session {
+        // 接收分词结果的回调
+        private final Consumer<Seg_unit> sink;
+        // 尚未输出的文本
+        private final StringBuilder window = new StringBuilder();
+        // window[0]在流中的位置
+        private long window_start = 0;
+        // 自动机的当前状态
+        private int state = ACTrie.root_state();
+
+        // 正向最长匹配：窗口中匹配到的词语，起点为相对于window[0]的位置，按照结尾位置升序排列
+        private int[] hit_start = new int[16];
+        private int[] hit_length = new int[16];
+        private int[] hit_word = new int[16];
+        private int hit_count = 0;
+
+        // 最少词语：以下数组以相对于window[0]的位置为下标，位置0为已经确定的分词路径的终点。
+        // cost[r]为从位置0到位置r的最少词语数量，back[r]为最后一个词语的起点，word[r]为最后一个词语的编号，-1表示单字
+        private int[] cost = new int[64];
+        private int[] back = new int[64];
+        private int[] word = new int[64];
+        // 寻找前驱链的公共祖先时标记经过的位置，与stamp相等表示已经标记
+        private int[] mark = new int[64];
+        private int stamp = 0;
+        // 输出路径时使用的缓冲区
+        private int[] path = new int[64];
+
+        Session(Consumer<Seg_unit> sink) {
+            this.sink = sink;
+        }
+
+        /**
+         * 读入一段字符
+         */
+        void feed(char[] buf, int off, int len) {
+            for (int i = off; i < off + len; ++i)
+                accept(buf[i]);
+        }
+
+        /**
+         * 读入一个字符，记录以它结尾的词语，并输出已经可以确定的分词结果
+         */
+        private void accept(char c) {
+            window.append(c);
+            state = trie.next_state(state, c);
+            if (mode == Mode.FORWARD) {
+                int end = window.length() - 1;
+                for (int hit = trie.first_output(state); hit != ACTrie.root_state(); hit = trie.next_output(hit)) {
+                    int len = trie.depth_of(hit);
+                    add_hit(end - len + 1, len, trie.word_id_of(hit));
+                }
+                // 之后匹配到的词语的起点都不会早于自动机当前状态对应的起点
+                emit_forward(window.length() - trie.depth_of(state));
+            } else {
+                int r = window.length();
+                ensure_capacity(r + 1);
+                begin_node(r);
+                for (int hit = trie.first_output(state); hit != ACTrie.root_state(); hit = trie.next_output(hit))
+                    relax(r, r - trie.depth_of(hit), trie.word_id_of(hit));
+                end_node(r);
+                emit_shortest();
+            }
+        }
+
+        /**
+         * 输入结束，输出剩余的所有结果
+         */
+        void finish() {
+            if (mode == Mode.FORWARD)
+                emit_forward(window.length());
+            else if (window.length() > 0)
+                emit_path(window.length());
+        }
+
+        /**
+         * 正向最长匹配，起点在limit之前的词语都已经确定
+         * @param limit 相对于window[0]的位置
+         */
+        private void emit_forward(int limit) {
+            while (limit > 0 && window.length() > 0) {
+                int best = -1;
+                for (int i = 0; i < hit_count; ++i)
+                    if (hit_start[i] == 0 && (best < 0 || hit_length[i] > hit_length[best]))
+                        best = i;
+
+                int len;
+                if (best >= 0) {
+                    len = hit_length[best];
+                    emit(trie.get_word(hit_word[best]), 0);
+                } else {
+                    len = 1;
+                    emit(new Word(window.substring(0, 1)), 0);
+                }
+                shift_hits(len);
+                limit -= len;
+            }
+        }
+
+        /**
+         * 记录一个匹配到的词语
+         */
+        private void add_hit(int start, int len, int word_id) {
+            if (hit_count == hit_start.length) {
+                hit_start = Arrays.copyOf(hit_start, hit_count << 1);
+                hit_length = Arrays.copyOf(hit_length, hit_count << 1);
+                hit_word = Arrays.copyOf(hit_word, hit_count << 1);
+            }
+            hit_start[hit_count] = start;
+            hit_length[hit_count] = len;
+            hit_word[hit_count] = word_id;
+            ++hit_count;
+        }
+
+        /**
+         * 丢弃窗口开头的n个字符，以及起点落在其中的词语
+         */
+        private void shift_hits(int n) {
+            n = Math.min(n, window.length());
+            window.delete(0, n);
+            window_start += n;
+            int kept = 0;
+            for (int i = 0; i < hit_count; ++i) {
+                if (hit_start[i] < n)
+                    continue;
+                hit_start[kept] = hit_start[i] - n;
+                hit_length[kept] = hit_length[i];
+                hit_word[kept] = hit_word[i];
+                ++kept;
+            }
+            hit_count = kept;
+        }
+
+        /**
+         * 开始计算位置r的最少词语数量
+         */
+        private void begin_node(int r) {
+            cost[r] = Integer.MAX_VALUE;
+            back[r] = -1;
+            word[r] = -1;
+        }
+
+        /**
+         * 用以位置r结尾的一个词语更新位置r，代价相同时选择起点更靠前的词语，与{@link ACTrie#shortest_segment_sentence}一致。
+         * 起点在窗口之前的词语跨越了已经确定的路径，不再考虑
+         * @param r 位置
+         * @param start 词语的起点
+         * @param word_id 词语的编号
+         */
+        private void relax(int r, int start, int word_id) {
+            if (start < 0)
+                return;
+            int c = cost[start] + 1;
+            if (c < cost[r] || (c == cost[r] && start < back[r])) {
+                cost[r] = c;
+                back[r] = start;
+                word[r] = word_id;
+            }
+        }
+
+        /**
+         * 完成位置r的计算：最后一个字可以单独成词，流的第一个字总是单独成词。最后一个字在词库中时，
+         * 以它为词语的代价不会小于当前的结果，所以只需要在当前结果不是以它结尾时比较
+         */
+        private void end_node(int r) {
+            if (window_start + r == 1) {
+                cost[r] = 1;
+                back[r] = 0;
+                word[r] = -1;
+            } else if (back[r] != r - 1 && cost[r - 1] + 1 < cost[r]) {
+                cost[r] = cost[r - 1] + 1;
+                back[r] = r - 1;
+                word[r] = -1;
+            }
+        }
+
+        /**
+         * 最少词语，输出最近的{@code max_word_length}个位置的前驱链的公共祖先之前的路径
+         */
+        private void emit_shortest() {
+            int hi = window.length();
+            int lo = hi - max_word_length + 1;
+            if (lo <= 0)
+                return;
+
+            int common = common_ancestor(lo, hi);
+            if (common == 0 && hi >= MAX_WINDOW) {
+                // 前驱链过长仍然没有汇合，把lo当作文本的结尾强制切断
+                emit_path(lo);
+                recompute();
+            } else if (common > 0)
+                emit_path(common);
+        }
+
+        /**
+         * 寻找位置[lo, hi]的前驱链的公共祖先。每个位置的前驱都在它之前，所以从后向前依次把标记过的位置替换为它的前驱，
+         * 直到只剩一个标记的位置，只会经过公共祖先之后的位置
+         * @return 公共祖先
+         */
+        private int common_ancestor(int lo, int hi) {
+            if (++stamp == Integer.MAX_VALUE) {
+                Arrays.fill(mark, 0);
+                stamp = 1;
+            }
+            for (int r = lo; r <= hi; ++r)
+                mark[r] = stamp;
+            int active = hi - lo + 1;
+            int x = hi;
+            for (; active > 1; --x) {
+                if (mark[x] != stamp)
+                    continue;
+                int prev = back[x];
+                if (mark[prev] == stamp)
+                    --active;
+                else
+                    mark[prev] = stamp;
+            }
+            while (mark[x] != stamp)
+                --x;
+            return x;
+        }
+
+        /**
+         * 输出从位置0到位置end的分词路径，之后位置end成为窗口的开头
+         */
+        private void emit_path(int end) {
+            int count = 0;
+            for (int r = end; r > 0; r = back[r]) {
+                if (count == path.length)
+                    path = Arrays.copyOf(path, count << 1);
+                path[count++] = r;
+            }
+            for (int i = count - 1; i >= 0; --i) {
+                int r = path[i];
+                int start = back[r];
+                emit(word[r] >= 0 ? trie.get_word(word[r]) : new Word(window.substring(start, r)), start);
+            }
+
+            int remain = window.length() - end;
+            int base_cost = cost[end];
+            for (int r = 0; r <= remain; ++r) {
+                cost[r] = cost[end + r] - base_cost;
+                back[r] = back[end + r] - end;
+                word[r] = word[end + r];
+            }
+            window.delete(0, end);
+            window_start += end;
+        }
+
+        /**
+         * 强制切断之后，窗口中剩余的位置只能从新的开头出发，重新匹配窗口中的文本并计算
+         */
+        private void recompute() {
+            var hits = trie.match_patterns_for(window, new ACTrie.Match_buffer());
+            int h = 0;
+            cost[0] = 0;
+            for (int r = 1; r <= window.length(); ++r) {
+                begin_node(r);
+                for (; h < hits.size() && hits.end(h) == r - 1; ++h)
+                    relax(r, hits.start(h), hits.word_id(h));
+                end_node(r);
+            }
+        }
+
+        /**
+         * 保证各个数组可以容纳n个位置
+         */
+        private void ensure_capacity(int n) {
+            if (n <= cost.length)
+                return;
+            int size = Math.max(n, cost.length << 1);
+            cost = Arrays.copyOf(cost, size);
+            back = Arrays.copyOf(back, size);
+            word = Arrays.copyOf(word, size);
+            mark = Arrays.copyOf(mark, size);
+        }
+
+        /**
+         * 输出一个词语
+         * @param w 词语
+         * @param start 相对于window[0]的起点
+         */
+        private void emit(Word w, int start) {
+            long index = window_start + start;
+            if (index > Integer.MAX_VALUE)
+                throw new IllegalStateException("词语在流中的位置" + index + "超过了Integer.MAX_VALUE，请把输入切分成多个流");
+            sink.accept(new Seg_unit(w, (int) index));
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package Utils;
+
+import Dictionary.Segment;
+import Dictionary.SegmentDictionary;
+
+/**
+ * 最大概率分词器，使用AC自动机中记录的词频作为一元概率，选取概率最大的分词路径，
+ * 见{@link ACTrie#max_probability_segment_sentence(CharSequence, ACTrie.Token_buffer)}。可以被多个线程同时使用。
+ */
+public class UnigramSegmenter implements SegmentDictionary {
+    // 使用的AC自动机
+    private final ACTrie trie;
+
+    /**
+     * @param trie 完成构建的AC自动机
+     */
+    public UnigramSegmenter(ACTrie trie) {
+        this.trie = trie;
+    }
+
+    @Override
+    public Segment segment(String text) {
+        return trie.max_probability_segment_sentence(text);
+    }
+
+    /**
+     * 进行最大概率分词，结果写入{@code result}
+     * @param text 进行分词的句段
+     * @param result 用于保存结果的缓冲区，写入之前会被清空
+     * @return {@code result}
+     */
+    public ACTrie.Token_buffer segment(CharSequence text, ACTrie.Token_buffer result) {
+        return trie.max_probability_segment_sentence(text, result);
+    }
+}
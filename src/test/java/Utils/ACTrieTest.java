@@ -0,0 +1,209 @@
+package Utils;
+
+import Dictionary.Seg_unit;
+import Dictionary.Segment;
+import Dictionary.Word;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Stack;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 把线性时间的最少词语分词、最大概率分词与直接的动态规划进行比较，并检查二进制快照的加载
+ */
+public class ACTrieTest {
+    // 快照中魔数、版本和词语数量之后是各个状态数组，每个数组之前有一个长度
+    private static final int HEADER_BYTES = 3 * Integer.BYTES;
+    private static final int BASE = 0, CHECK = 1, FAIL = 2, DEPTH = 5;
+
+    private static ACTrie trie;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void load() {
+        trie = new ACTrie(TestData.path("dict.txt"));
+        assertTrue(trie.is_built());
+    }
+
+    @Test
+    public void shortest_matches_reference() {
+        for (var text : TestData.sentences())
+            assertEquals(text, TestData.spans(reference_shortest(trie, text)),
+                    TestData.spans(trie.shortest_segment_sentence(text)));
+    }
+
+    @Test
+    public void max_probability_matches_reference() {
+        for (var text : TestData.sentences())
+            assertEquals(text, TestData.spans(reference_max_probability(trie, text)),
+                    TestData.spans(trie.max_probability_segment_sentence(text)));
+    }
+
+    @Test
+    public void empty_input() {
+        assertEquals(0, trie.shortest_segment_sentence("").length());
+        assertEquals(0, trie.max_probability_segment_sentence("").length());
+    }
+
+    @Test
+    public void oov_spans_are_single_characters() {
+        var text = "abc中国xyz";
+        for (var seg : List.of(trie.shortest_segment_sentence(text), trie.max_probability_segment_sentence(text)))
+            assertEquals(List.of("0:a", "1:b", "2:c", "3:中国", "5:x", "6:y", "7:z"), TestData.spans(seg));
+    }
+
+    @Test
+    public void snapshot_round_trip() throws IOException {
+        var file = folder.newFile("dict.bin").toString();
+        assertTrue(trie.save(file));
+        var loaded = ACTrie.load(file);
+        assertNotNull(loaded);
+        assertEquals(trie.vocal_count(), loaded.vocal_count());
+        for (var text : TestData.sentences()) {
+            assertEquals(text, TestData.spans(trie.forward_segment_sentence(text)),
+                    TestData.spans(loaded.forward_segment_sentence(text)));
+            assertEquals(text, TestData.spans(trie.shortest_segment_sentence(text)),
+                    TestData.spans(loaded.shortest_segment_sentence(text)));
+            assertEquals(text, TestData.spans(trie.max_probability_segment_sentence(text)),
+                    TestData.spans(loaded.max_probability_segment_sentence(text)));
+        }
+    }
+
+    @Test
+    public void corrupted_snapshot_fails_to_load() throws IOException {
+        var file = folder.newFile("dict.bin").toString();
+        assertTrue(trie.save(file));
+        var bytes = Files.readAllBytes(Path.of(file));
+        int size = ByteBuffer.wrap(bytes).getInt(HEADER_BYTES);
+        int last = size - 1;
+
+        int[][] corruptions = {
+                {BASE, 0, -1000},
+                {BASE, 0, Integer.MAX_VALUE - 10},
+                {CHECK, last, size},
+                {FAIL, last, last},
+                {DEPTH, 0, 1},
+                {DEPTH, last, -1},
+                {DEPTH, last, 10000},
+        };
+        for (var corruption : corruptions) {
+            var copy = bytes.clone();
+            int offset = HEADER_BYTES + corruption[0] * Integer.BYTES * (size + 1) + Integer.BYTES * (corruption[1] + 1);
+            ByteBuffer.wrap(copy).putInt(offset, corruption[2]);
+            var corrupted = folder.newFile().toPath();
+            Files.write(corrupted, copy);
+            assertNull(Arrays.toString(corruption), ACTrie.load(corrupted.toString()));
+        }
+    }
+
+    /**
+     * 原来的最少词语分词：对每一个终点枚举所有起点，逐个在以起点开头的词语中查找长度合适的词语，
+     * 第一个字总是单独成词，空串不做处理
+     */
+    static Segment reference_shortest(ACTrie trie, String text) {
+        if (text.isEmpty())
+            return new Segment();
+        List<List<Seg_unit>> edges = new ArrayList<>(text.length());
+        for (int i = 0; i < text.length(); ++i)
+            edges.add(new ArrayList<>());
+        trie.match_patterns_for(text).forEach(ele -> edges.get(ele.index).add(ele));
+
+        var path_seg = new Seg_unit[text.length() + 1];
+        var path_length = new int[text.length() + 1];
+        path_length[1] = 1;
+        for (int i = 2; i <= text.length(); ++i) {
+            int tmp_len = Integer.MAX_VALUE;
+            Seg_unit tmp_seg = null;
+            for (int j = 0; j < i; ++j) {
+                int len = i - j;
+                Optional<Seg_unit> edge = edges.get(j).stream()
+                        .filter(e -> e.word.text.length() == len)
+                        .findFirst();
+                if ((len == 1 || edge.isPresent()) && tmp_len > path_length[j] + 1) {
+                    tmp_len = path_length[j] + 1;
+                    tmp_seg = edge.orElse(null);
+                }
+            }
+            path_length[i] = tmp_len;
+            path_seg[i] = tmp_seg;
+        }
+
+        Stack<Seg_unit> result_stack = new Stack<>();
+        for (int i = text.length(); i > 0; ) {
+            if (path_seg[i] == null) {
+                result_stack.push(new Seg_unit(new Word(text.substring(i - 1, i)), i - 1));
+                --i;
+            } else {
+                result_stack.push(path_seg[i]);
+                i -= path_seg[i].word.text.length();
+            }
+        }
+        var result_seg = new Segment(result_stack.size());
+        while (!result_stack.empty())
+            result_seg.add_segment(result_stack.pop());
+        return result_seg;
+    }
+
+    /**
+     * 直接的最大概率分词：对每一个终点按照起点升序枚举所有在词库中的片段，概率的计算方式与{@code ACTrie}相同
+     */
+    static Segment reference_max_probability(ACTrie trie, String text) {
+        long total = trie.vocal_count() + 1;
+        for (int w = 0; w < trie.vocal_count(); ++w)
+            total += trie.get_word(w).info.get_type_sum_by_freq();
+        double log_total = Math.log(total);
+        float log_prob_oov = (float) -log_total;
+
+        int length = text.length();
+        var path_prob = new float[length + 1];
+        var path_start = new int[length + 1];
+        var path_word = new int[length + 1];
+        for (int i = 1; i <= length; ++i) {
+            float tmp_prob = Float.NEGATIVE_INFINITY;
+            int tmp_start = i - 1, tmp_word = -1;
+            for (int j = 0; j < i; ++j) {
+                int id = trie.get_id_of_word(text, j, i);
+                if (id < 0)
+                    continue;
+                float log_prob = (float) (Math.log(trie.get_word(id).info.get_type_sum_by_freq() + 1) - log_total);
+                if (path_prob[j] + log_prob > tmp_prob) {
+                    tmp_prob = path_prob[j] + log_prob;
+                    tmp_start = j;
+                    tmp_word = id;
+                }
+            }
+            if (trie.get_id_of_word(text, i - 1, i) < 0 && path_prob[i - 1] + log_prob_oov > tmp_prob) {
+                tmp_prob = path_prob[i - 1] + log_prob_oov;
+                tmp_start = i - 1;
+                tmp_word = -1;
+            }
+            path_prob[i] = tmp_prob;
+            path_start[i] = tmp_start;
+            path_word[i] = tmp_word;
+        }
+
+        List<Seg_unit> units = new ArrayList<>();
+        for (int i = length; i > 0; i = path_start[i]) {
+            var word = path_word[i] >= 0 ? trie.get_word(path_word[i]) : new Word(text.substring(i - 1, i));
+            units.add(0, new Seg_unit(word, path_start[i]));
+        }
+        return new Segment(units);
+    }
+}
@@ -0,0 +1,62 @@
+package Utils;
+
+import Dictionary.Seg_unit;
+import Dictionary.Segment;
+import Dictionary.Word;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/**
+ * 缓存的分词结果与被包装的分词器相同，命中时共享同一个只读的分词结果
+ */
+public class CachedSegmenterTest {
+
+    @Test
+    public void hits_share_read_only_results() {
+        var trie = new ACTrie(TestData.path("dict.txt"));
+        var cached = new CachedSegmenter(trie::forward_segment_sentence, 64);
+
+        for (var text : TestData.sentences()) {
+            var first = cached.segment(text);
+            var second = cached.segment(text);
+            assertEquals(text, TestData.spans(trie.forward_segment_sentence(text)), TestData.spans(first));
+
+            // 两次命中返回同一组分词单元，不再拷贝
+            assertSame(text, first, second);
+            for (int i = 0; i < first.length(); ++i)
+                assertSame(text, first.get_which(i), second.get_which(i));
+
+            assert_read_only(text, first);
+
+            // 拷贝得到的分词结果可以修改，不影响缓存
+            var copy = first.copy();
+            copy.add_segment(new Seg_unit(new Word("尾"), text.length()));
+            assertEquals(text, first.length() + 1, copy.length());
+            assertEquals(text, TestData.spans(trie.forward_segment_sentence(text)), TestData.spans(cached.segment(text)));
+        }
+        assertEquals(TestData.sentences().size(), cached.get_cache().get_miss_count());
+    }
+
+    private static void assert_read_only(String text, Segment seg) {
+        var unit = new Seg_unit(new Word("尾"), text.length());
+        List<Runnable> mutations = List.of(
+                () -> seg.add_segment(unit),
+                () -> seg.add_segments(List.of(unit)),
+                () -> seg.get_raw().add(unit),
+                () -> seg.get_raw().set(0, unit),
+                () -> seg.get_raw().clear());
+        for (var mutation : mutations) {
+            try {
+                mutation.run();
+                fail("缓存的分词结果被修改：" + text);
+            } catch (UnsupportedOperationException expected) {
+                // 符合预期
+            }
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package Utils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 单遍扫描的语料解析器必须与原来基于split和正则表达式的解析给出相同的词语和词性转移序列
+ */
+public class CorpusParserTest {
+    // 额外的语料行：没有标注的标点符号、多余的空白、末尾的空白和制表符
+    private static final String[] EXTRA_LINES = {
+            "他/r  说/v  ：  我们/r  来/v  了/u  。",
+            "他们/r，我们/r、你们/r  都/d  来/v  了/u！",
+            "  前面/f  有/v  空格/n  ",
+            "末尾/f  有/v  制表符/n\t",
+            "[中国/ns  人民/n]/nt  ，  [北京/ns  大学/n]/nt  。  ",
+            "单独/d",
+            "比分/n  是/v  3/m  -  1/m  ……  ",
+            "“/w  引号/n  ”/w  里/f  的/u  词/n",
+    };
+
+    /**
+     * 按顺序记录解析结果
+     */
+    private static class Recorder implements HMMTagger.Corpus_sink {
+        final List<String> words = new ArrayList<>();
+        final List<String> trans = new ArrayList<>();
+
+        @Override
+        public void word(String text, String tag) {
+            words.add(text + "/" + tag);
+        }
+
+        @Override
+        public void trans(String former, String latter) {
+            trans.add(former + ">" + latter);
+        }
+    }
+
+    @Test
+    public void matches_regex_parser() {
+        List<String> lines = new ArrayList<>(TestData.lines("corpus.txt"));
+        lines.addAll(Arrays.asList(EXTRA_LINES));
+
+        int compared = 0;
+        for (var line : lines) {
+            var actual = new Recorder();
+            new HMMTagger.Corpus_parser(actual).parse(line);
+
+            if (line.isBlank()) {
+                // 原来的解析在空行上抛出异常，只跳过这一行
+                try {
+                    Old_parser.parse_line(line, new Recorder());
+                    fail("原来的解析接受了空行");
+                } catch (RuntimeException expected) {
+                    // 符合预期
+                }
+                assertTrue(actual.words.isEmpty());
+                assertTrue(actual.trans.isEmpty());
+                continue;
+            }
+
+            var expected = new Recorder();
+            Old_parser.parse_line(line, expected);
+            assertEquals(line, expected.words, actual.words);
+            assertEquals(line, expected.trans, actual.trans);
+            ++compared;
+        }
+        assertTrue(compared > EXTRA_LINES.length);
+    }
+
+    /**
+     * 原来的语料解析：先用正则表达式补全标点符号的词性、合并连续的空白，再分别扫描词语和词性转移
+     */
+    private static class Old_parser {
+        private static final Pattern regex_comm = Pattern.compile("[：。？！“”【】‘’、，；（）:.?!\"',;()-]|…{2}");
+        private static final Pattern regex_space = Pattern.compile("\\s{2,}");
+
+        static void parse_line(String line, HMMTagger.Corpus_sink sink) {
+            var processed_line = clean_line(line.trim());
+            analysis_word(processed_line, sink);
+            analysis_transmission(processed_line, sink);
+        }
+
+        private static void analysis_word(String line, HMMTagger.Corpus_sink sink) {
+            int start = 0, end = 1;
+            while (start < line.length()) {
+                if (line.charAt(start) != '[' || line.charAt(start + 1) == '/') {
+                    while (end < line.length() && line.charAt(end) != ' ')
+                        ++end;
+                    int slash_index = end - 1;
+                    while (line.charAt(slash_index) != '/')
+                        --slash_index;
+
+                    sink.word(line.substring(start, slash_index), line.substring(slash_index + 1, end));
+                } else {
+                    while (end < line.length() && line.charAt(end) != ']')
+                        ++end;
+
+                    var sub_line = line.substring(start + 1, end);
+                    analysis_word(sub_line, sink);
+
+                    var merge_word = Arrays.stream(sub_line.split("\\s"))
+                            .map(x -> x.substring(0, x.indexOf("/")))
+                            .reduce("", String::concat);
+                    ++end;
+                    var end_end = ++end;
+                    while (end_end < line.length() && line.charAt(end_end) != ' ')
+                        ++end_end;
+
+                    sink.word(merge_word, line.substring(end, end_end));
+                    end = end_end;
+                }
+                start = ++end;
+                end = start + 1;
+            }
+        }
+
+        private static void analysis_transmission(String line, HMMTagger.Corpus_sink sink) {
+            int start, end = 0;
+            List<String> part_list = new LinkedList<>();
+
+            while (end < line.length()) {
+                if (line.charAt(end) == '[' && line.charAt(end + 1) != '/') {
+                    while (line.charAt(end) != ']')
+                        ++end;
+                }
+                while (end < line.length() && line.charAt(end) != ' ')
+                    ++end;
+
+                start = end - (end == line.length() ? 1 : 0);
+                while (line.charAt(start) != '/')
+                    --start;
+                ++start;
+
+                part_list.add(line.substring(start, end));
+                ++end;
+            }
+
+            var former = part_list.iterator();
+            var latter = part_list.iterator();
+
+            latter.next();
+            while (latter.hasNext())
+                sink.trans(former.next(), latter.next());
+        }
+
+        private static String clean_line(String line) {
+            StringBuilder result_str = new StringBuilder(line);
+            var results_comm = regex_comm.matcher(line).results().collect(Collectors.toList());
+            var it_comm = results_comm.listIterator(results_comm.size());
+
+            while (it_comm.hasPrevious()) {
+                var token = it_comm.previous();
+                if (token.end() >= line.length() || line.charAt(token.end()) != '/')
+                    result_str.replace(token.start(), token.end(),
+                            line.substring(token.start(), token.end()) + "/w ");
+            }
+
+            var results_space = regex_space.matcher(result_str).results().collect(Collectors.toList());
+            var it_space = results_space.listIterator(results_space.size());
+
+            while (it_space.hasPrevious()) {
+                var token = it_space.previous();
+                result_str.replace(token.start(), token.end(), " ");
+            }
+
+            return result_str.toString();
+        }
+    }
+}
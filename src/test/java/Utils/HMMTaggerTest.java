@@ -0,0 +1,63 @@
+package Utils;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 分片并行训练得到的模型必须与单个分片训练得到的模型完全相同
+ */
+public class HMMTaggerTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void sharded_training_matches_single_shard() throws IOException {
+        var corpus = TestData.path("corpus.txt");
+        var single = new HMMTagger(corpus, 1);
+        var expected_file = folder.newFile("single.bin").toString();
+        assertTrue(single.save(expected_file));
+        var expected_bytes = Files.readAllBytes(Path.of(expected_file));
+
+        for (int shard_count : new int[]{2, 3, 4, 7, 16}) {
+            var sharded = new HMMTagger(corpus, shard_count);
+            var message = shard_count + " shards";
+
+            // 统计和词库通过模型文件比较，模型文件中保存了各个统计数组以及每个词语在各个词性下的频率
+            var file = folder.newFile("sharded_" + shard_count + ".bin").toString();
+            assertTrue(sharded.save(file));
+            assertArrayEquals(message, expected_bytes, Files.readAllBytes(Path.of(file)));
+
+            assert_same_model(message, single.model(), sharded.model());
+        }
+    }
+
+    /**
+     * 比较两个编译得到的模型中的词性表、转移和发射的对数概率表
+     */
+    static void assert_same_model(String message, HMMTagger.Model expected, HMMTagger.Model actual) {
+        assertNotNull(message, expected);
+        assertNotNull(message, actual);
+        assertArrayEquals(message, expected.tag_list, actual.tag_list);
+        assertArrayEquals(message, expected.word_count, actual.word_count);
+        assertEquals(message, expected.log_trans.length, actual.log_trans.length);
+        for (int k = 0; k < expected.log_trans.length; ++k)
+            assertArrayEquals(message, expected.log_trans[k], actual.log_trans[k], 0f);
+        assertArrayEquals(message, expected.log_emission_oov, actual.log_emission_oov, 0f);
+
+        assertEquals(message, expected.words.id_bound(), actual.words.id_bound());
+        for (int id = 0; id < expected.words.id_bound(); ++id) {
+            assertEquals(message, expected.words.get_word(id).text, actual.words.get_word(id).text);
+            assertArrayEquals(message, expected.log_emission_of(id), actual.log_emission_of(id), 0f);
+        }
+    }
+}
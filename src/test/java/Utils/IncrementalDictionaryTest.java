@@ -0,0 +1,87 @@
+package Utils;
+
+import Dictionary.Word;
+import Dictionary.Word_info;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 同时查找基础自动机和增量自动机的三种分词方式必须与合并之后的词库给出相同的切分，增量自动机的大小不超过合并阈值
+ */
+public class IncrementalDictionaryTest {
+    // 只由少数几个字组成的词语和文本，词语之间有大量的交集歧义
+    private static final String ALPHABET = "甲乙丙丁戊己";
+
+    @Test
+    public void layered_segmentation_matches_merged_dictionary() {
+        var random = new Random(11);
+        var base = new ACTrie(random_words(random, 60, 10));
+        var dictionary = new IncrementalDictionary(base, 1 << 20, Runnable::run);
+
+        // 第一批有新词也有已有的词语，第二批累加第一批中的词语，新增的词频足以改变一元概率的分母
+        for (int batch = 0; batch < 2; ++batch) {
+            dictionary.add_words(random_words(random, 40, 200));
+            var snapshot = dictionary.snapshot();
+            var merged = snapshot.merged();
+            var backward = new BackwardSegmenter(merged);
+            var reversed_base = base.reversed();
+
+            for (int n = 0; n < 300; ++n) {
+                var text = random_text(random, 1 + random.nextInt(30));
+                var message = "batch " + batch + ": " + text;
+                var tokens = new ACTrie.Token_buffer();
+
+                assertEquals(message, TestData.spans(merged.forward_segment_sentence(text)),
+                        TestData.spans(snapshot.to_segment(text, snapshot.forward_segment(text, tokens))));
+                assertEquals(message, TestData.spans(backward.segment(text)),
+                        TestData.spans(snapshot.to_segment(text, snapshot.backward_segment(text, reversed_base, tokens))));
+                assertEquals(message, TestData.spans(merged.max_probability_segment_sentence(text)),
+                        TestData.spans(snapshot.to_segment(text, snapshot.max_probability_segment(text, tokens))));
+            }
+        }
+    }
+
+    @Test
+    public void delta_is_bounded_by_merge_threshold() {
+        var random = new Random(5);
+        int threshold = 8;
+        var base = new ACTrie(random_words(random, 20, 10));
+        // 合并在添加词语的线程中完成
+        var dictionary = new IncrementalDictionary(base, threshold, Runnable::run);
+
+        List<Word> added = new ArrayList<>();
+        for (int batch = 0; batch < 50; ++batch) {
+            var words = random_words(random, 3, 10);
+            dictionary.add_words(words);
+            added.addAll(words);
+
+            var snapshot = dictionary.snapshot();
+            assertTrue(snapshot.id_bound() - snapshot.get_base().vocal_count() < threshold);
+            for (var word : added)
+                assertNotNull(word.text, dictionary.get_info_of_word(word.text));
+        }
+        assertTrue(dictionary.snapshot().get_base() != base);
+    }
+
+    private static List<Word> random_words(Random random, int count, int max_freq) {
+        List<Word> words = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i)
+            words.add(new Word(random_text(random, 1 + random.nextInt(4)),
+                    new Word_info(1).add_type("n", 1 + random.nextInt(max_freq))));
+        return words;
+    }
+
+    private static String random_text(Random random, int length) {
+        var builder = new StringBuilder(length);
+        for (int i = 0; i < length; ++i)
+            builder.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        return builder.toString();
+    }
+}
@@ -0,0 +1,73 @@
+package Utils;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 按分片逐行读取得到的行必须与{@link BufferedReader#readLine()}相同，无论分成多少片、使用哪一种换行符
+ */
+public class LineShardsTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void matches_read_line() throws IOException {
+        List<String> texts = new ArrayList<>(List.of(
+                "",
+                "\n",
+                "\r",
+                "\r\n",
+                "单行",
+                "甲\n乙\r\n丙\r丁",
+                "甲\r\r\n\n乙\r",
+                "\r\n\r\n末尾\r\n"));
+        // 分成两片时，从名义上的边界5000开始读取的4096个字节正好以'\r'结尾，'\n'在下一次读取的范围内
+        texts.add("a".repeat(9095) + "\r\n" + "b".repeat(903));
+        var random = new Random(3);
+        for (int n = 0; n < 20; ++n) {
+            var builder = new StringBuilder();
+            for (int i = 0; i < 200; ++i)
+                builder.append("ab中文\r\n".charAt(random.nextInt(6)));
+            texts.add(builder.toString());
+        }
+
+        for (var text : texts) {
+            var expected = read_lines(text);
+            var file = folder.newFile().toPath();
+            Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+            try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                for (int shard_count = 1; shard_count <= 16; ++shard_count) {
+                    var bounds = LineShards.bounds(channel, shard_count);
+                    List<String> actual = new ArrayList<>();
+                    for (int i = 0; i + 1 < bounds.length; ++i)
+                        LineShards.for_each_line(channel, bounds[i], bounds[i + 1], actual::add);
+                    assertEquals(shard_count + " shards: " + text.replace("\r", "\\r").replace("\n", "\\n"),
+                            expected, actual);
+                }
+            }
+        }
+    }
+
+    private static List<String> read_lines(String text) throws IOException {
+        List<String> lines = new ArrayList<>();
+        var reader = new BufferedReader(new StringReader(text));
+        String line;
+        while ((line = reader.readLine()) != null)
+            lines.add(line);
+        return lines;
+    }
+}
@@ -0,0 +1,54 @@
+package Utils;
+
+import Dictionary.Word;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 只有真正替换了词库的重新加载计入成功的次数，被更新的版本取代的重新加载单独计数
+ */
+public class ReloadableDictionaryTest {
+
+    @Test
+    public void superseded_reload_is_not_counted_as_success() {
+        // 手动执行提交的重新加载，控制完成的顺序
+        List<Runnable> tasks = new ArrayList<>();
+        var dictionary = new ReloadableDictionary(trie_of("甲乙"), t -> t::forward_segment_sentence, tasks::add);
+
+        var older_trie = trie_of("甲乙丙");
+        var newer_trie = trie_of("乙丙");
+        var older = dictionary.reload(() -> older_trie);
+        var newer = dictionary.reload(() -> newer_trie);
+        var failed = dictionary.reload(() -> null);
+        assertEquals(3, tasks.size());
+
+        // 后开始的先完成，先开始的随后完成时已经被取代
+        tasks.get(1).run();
+        tasks.get(0).run();
+        tasks.get(2).run();
+        assertTrue(newer.join());
+        assertFalse(older.join());
+        assertFalse(failed.join());
+        assertSame(newer_trie, dictionary.get_trie());
+
+        var metrics = dictionary.get_metrics();
+        assertEquals(1, metrics.reload_count);
+        assertEquals(1, metrics.superseded_count);
+        assertEquals(1, metrics.failed_count);
+        assertEquals(0, metrics.retiring_count);
+    }
+
+    private static ACTrie trie_of(String... words) {
+        List<Word> list = new ArrayList<>();
+        for (var word : words)
+            list.add(new Word(word));
+        return new ACTrie(list);
+    }
+}
@@ -0,0 +1,96 @@
+package Utils;
+
+import Dictionary.SegmentDictionary;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 在样例答案上评测每一种分词方式，顺序评测、并行评测、比较评测与直接按照词语区间计算的指标必须一致
+ */
+public class SegmentGraderTest {
+    private static final float DELTA = 1e-6f;
+
+    private static Map<String, SegmentDictionary> modes;
+
+    @BeforeClass
+    public static void load() {
+        var trie = new ACTrie(TestData.path("dict.txt"));
+        modes = new LinkedHashMap<>();
+        modes.put("forward", trie::forward_segment_sentence);
+        modes.put("backward", new BackwardSegmenter(trie));
+        modes.put("bidirectional", new BidirectionalSegmenter(trie));
+        modes.put("shortest", trie::shortest_segment_sentence);
+        modes.put("unigram", new UnigramSegmenter(trie));
+    }
+
+    @Test
+    public void every_mode_matches_reference_scores() {
+        var gold = TestData.path("gold.txt");
+        var comparison = new ComparativeGrader(gold).compare(modes);
+        assertNotNull(comparison);
+
+        int k = 0;
+        for (var mode : modes.entrySet()) {
+            var name = mode.getKey();
+            var expected = reference_scores(mode.getValue());
+
+            var sequential = new SegmentGrader(gold).getResult(mode.getValue());
+            var parallel = new SegmentGrader(gold).evaluate(mode.getValue(), 4);
+            var compared = comparison.get(k++);
+            assertEquals(name, compared.name);
+            for (var result : new SegmentGrader.Result[]{sequential, parallel, compared.result}) {
+                assertNotNull(name, result);
+                assertEquals(name, expected[0], result.precision, DELTA);
+                assertEquals(name, expected[1], result.recall, DELTA);
+                assertEquals(name, expected[2], result.f1, DELTA);
+            }
+            // 词库由答案所在的语料库生成，只缺少少数几个词语
+            assertTrue(name + ": " + sequential, sequential.f1 > 0.9f);
+        }
+    }
+
+    @Test
+    public void missing_gold_file_gives_no_comparison() {
+        var grader = new ComparativeGrader(TestData.path("gold.txt") + ".missing");
+        assertEquals(0, grader.sentence_count());
+        assertNull(grader.compare(modes));
+    }
+
+    /**
+     * 把答案和分词结果都表示为词语区间的集合，直接计算准确率、召回率和f1值
+     * @param dict 分词器
+     * @return 准确率、召回率、f1值
+     */
+    private static float[] reference_scores(SegmentDictionary dict) {
+        long gold_count = 0, test_count = 0, correct = 0;
+        for (var line : TestData.lines("gold.txt")) {
+            var gold_spans = new HashSet<String>();
+            int pos = 0;
+            for (var word : line.trim().split("\\s+")) {
+                if (word.isEmpty())
+                    continue;
+                gold_spans.add(pos + "-" + (pos + word.length()));
+                pos += word.length();
+            }
+            gold_count += gold_spans.size();
+
+            var seg = dict.segment(line.replaceAll("\\s+", ""));
+            test_count += seg.length();
+            for (var unit : seg.get_raw())
+                if (gold_spans.contains(unit.index + "-" + (unit.index + unit.word.text.length())))
+                    ++correct;
+        }
+        float precision = correct / (float) test_count;
+        float recall = correct / (float) gold_count;
+        return new float[]{precision, recall, 2 * precision * recall / (precision + recall)};
+    }
+}
@@ -0,0 +1,65 @@
+package Utils;
+
+import Dictionary.Seg_unit;
+import Dictionary.Segment;
+import Dictionary.Word;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 流水线中由词语编号进行的标注必须与由词语文本进行的标注（{@link HMMTagger#tag(Segment)}）结果相同
+ */
+public class SegmentTaggerTest {
+
+    @Test
+    public void word_id_path_matches_text_path() {
+        var tagger = new HMMTagger(TestData.path("corpus.txt"));
+        List<String> sentences = new ArrayList<>(TestData.sentences());
+        sentences.addAll(List.of("乺丳亚侔来到北京。", "北京亚侔乺丳亚来到"));
+        check_all_modes(tagger, sentences);
+
+        // 在线更新之后，三种方式都同时查找基础自动机和增量自动机，结果与合并之后的词库相同
+        tagger.update_lines(Collections.nCopies(5, "乺丳/nr  亚侔/n  来到/v  北京/ns  。/w"));
+        assertTrue(tagger.model().words.has_delta());
+        check_all_modes(tagger, sentences);
+    }
+
+    private static void check_all_modes(HMMTagger tagger, List<String> sentences) {
+        var merged = tagger.model().words.merged();
+        for (var mode : SegmentTagger.Mode.values()) {
+            var pipeline = new SegmentTagger(tagger, mode);
+            for (var text : sentences) {
+                var message = mode + ": " + text;
+                var units = pipeline.process(text);
+
+                // 与合并之后的词库上对应的分词器给出相同的切分
+                var seg = mode == SegmentTagger.Mode.FORWARD ? merged.forward_segment_sentence(text)
+                        : mode == SegmentTagger.Mode.BACKWARD ? new BackwardSegmenter(merged).segment(text)
+                        : merged.max_probability_segment_sentence(text);
+                assertEquals(message, TestData.spans(seg), spans(units));
+
+                // 由文本重新查找词语进行标注
+                var by_text = new Segment(units.size());
+                for (var unit : units)
+                    by_text.add_segment(new Seg_unit(new Word(unit.text), unit.index));
+                List<String> tags = new ArrayList<>(units.size());
+                for (var unit : units)
+                    tags.add(unit.tag);
+                assertEquals(message, tagger.tag(by_text), tags);
+            }
+        }
+    }
+
+    private static List<String> spans(List<SegmentTagger.Tagged_unit> units) {
+        List<String> res = new ArrayList<>(units.size());
+        for (var unit : units)
+            res.add(unit.index + ":" + unit.text);
+        return res;
+    }
+}
@@ -0,0 +1,121 @@
+package Utils;
+
+import Dictionary.Seg_unit;
+import Dictionary.Segment;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 流式分词的结果必须与对整个文本分词的结果相同，无论输入在什么位置被切分成多次读取
+ */
+public class StreamSegmenterTest {
+    // 每次读取的字符数，覆盖单个字符、词语中间以及超过内部缓冲区的情况
+    private static final int[] CHUNK_SIZES = {1, 2, 3, 7, 64, 8191, 100000};
+
+    private static ACTrie trie;
+    private static List<String> texts;
+
+    @BeforeClass
+    public static void load() {
+        trie = new ACTrie(TestData.path("dict.txt"));
+        texts = new ArrayList<>(TestData.sentences());
+        texts.add(String.join("", TestData.sentences()));
+        texts.add(String.join("\n", TestData.lines("gold.txt")));
+        texts.add(random_text(new Random(42), 50000));
+    }
+
+    @Test
+    public void forward_matches_whole_text() throws IOException {
+        check(StreamSegmenter.Mode.FORWARD);
+    }
+
+    @Test
+    public void shortest_matches_whole_text() throws IOException {
+        check(StreamSegmenter.Mode.SHORTEST);
+    }
+
+    @Test
+    public void shortest_emits_before_reading_everything() {
+        var text = random_text(new Random(7), 200000);
+        var reader = new Chunked_reader(text, 1000);
+        var it = new StreamSegmenter(trie, StreamSegmenter.Mode.SHORTEST).iterator(reader);
+        assertTrue(it.hasNext());
+        it.next();
+        // 只需要读入很少的文本就可以输出第一个词语，而不是积累到固定大小的窗口
+        assertTrue(reader.consumed + " chars read", reader.consumed <= 1000);
+    }
+
+    private static void check(StreamSegmenter.Mode mode) throws IOException {
+        var segmenter = new StreamSegmenter(trie, mode);
+        for (var text : texts) {
+            var expected = TestData.spans(mode == StreamSegmenter.Mode.FORWARD
+                    ? trie.forward_segment_sentence(text)
+                    : trie.shortest_segment_sentence(text));
+            for (int chunk : CHUNK_SIZES) {
+                var message = mode + ", chunk " + chunk + ": " + text.substring(0, Math.min(text.length(), 20));
+
+                var actual = new Segment();
+                segmenter.segment(new Chunked_reader(text, chunk), actual::add_segment);
+                assertEquals(message, expected, TestData.spans(actual));
+
+                List<Seg_unit> iterated = new ArrayList<>();
+                segmenter.iterator(new Chunked_reader(text, chunk)).forEachRemaining(iterated::add);
+                assertEquals(message, expected, TestData.spans(new Segment(iterated)));
+            }
+        }
+    }
+
+    /**
+     * 由词库中的词语、词库外的字和标点随机拼接成的没有分隔的文本，其中有大量的交集歧义
+     */
+    private static String random_text(Random random, int length) {
+        var builder = new StringBuilder(length);
+        while (builder.length() < length) {
+            int p = random.nextInt(10);
+            if (p < 8)
+                builder.append(trie.get_word(random.nextInt(trie.vocal_count())).text);
+            else if (p < 9)
+                builder.append((char) ('一' + random.nextInt(2000)));
+            else
+                builder.append("，。\n".charAt(random.nextInt(3)));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 每次最多读出固定数量字符的输入，并记录已经读出的字符数
+     */
+    private static class Chunked_reader extends Reader {
+        private final StringReader in;
+        private final int chunk;
+        int consumed = 0;
+
+        Chunked_reader(String text, int chunk) {
+            this.in = new StringReader(text);
+            this.chunk = chunk;
+        }
+
+        @Override
+        public int read(char[] buf, int off, int len) throws IOException {
+            int n = in.read(buf, off, Math.min(len, chunk));
+            if (n > 0)
+                consumed += n;
+            return n;
+        }
+
+        @Override
+        public void close() {
+            in.close();
+        }
+    }
+}
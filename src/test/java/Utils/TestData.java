@@ -0,0 +1,87 @@
+package Utils;
+
+import Dictionary.Segment;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 测试使用的样例数据：人民日报格式的语料库corpus.txt，由语料库生成的词库dict.txt（去掉了几个词语以产生词库外的片段），
+ * 以及不带词性标注的答案gold.txt
+ */
+final class TestData {
+    // 额外的测试句子：有多种切分方式的交集歧义、词库外的片段、非中文字符、单字以及空串
+    static final String[] EXTRA_SENTENCES = {
+            "今天气温很低",
+            "科学生活",
+            "其他们都有关心",
+            "发表示意",
+            "客人民大会堂",
+            "全国际合作",
+            "戴相龙说今年的货币政策不变",
+            "江泽民在人民大会堂发表讲话",
+            "坚定不移",
+            "abc中国xyz人民银行",
+            "乺丳亚侔",
+            "中",
+            "",
+    };
+
+    private TestData() {}
+
+    /**
+     * 返回测试资源的文件地址
+     * @param name 资源的名字
+     * @return 文件地址
+     */
+    static String path(String name) {
+        try {
+            return Path.of(TestData.class.getResource("/" + name).toURI()).toString();
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 读取测试资源的所有行
+     * @param name 资源的名字
+     * @return 所有行
+     */
+    static List<String> lines(String name) {
+        try {
+            return Files.readAllLines(Path.of(path(name)), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 返回测试句子：答案中去掉空白的句子以及{@link #EXTRA_SENTENCES}
+     * @return 测试句子
+     */
+    static List<String> sentences() {
+        List<String> res = new ArrayList<>();
+        for (var line : lines("gold.txt"))
+            res.add(line.replaceAll("\\s+", ""));
+        res.addAll(List.of(EXTRA_SENTENCES));
+        return res;
+    }
+
+    /**
+     * 把分词结果表示为“起点:词语”的序列，便于比较
+     * @param seg 分词结果
+     * @return 序列
+     */
+    static List<String> spans(Segment seg) {
+        List<String> res = new ArrayList<>(seg.length());
+        for (var unit : seg.get_raw())
+            res.add(unit.index + ":" + unit.word.text);
+        return res;
+    }
+}